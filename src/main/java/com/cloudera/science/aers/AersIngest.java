@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/**
+ * A one-time conversion of the ASCII AERS files for each quarter into
+ * {@link ColumnarTable} files, so that reruns of step 1 do not have to parse
+ * the text files or group the tables by ISR. Each DEMOyyQn.TXT, DRUGyyQn.TXT,
+ * and REACyyQn.TXT file in the input directory is written to demoyyqn.col,
+ * drugyyqn.col, or reacyyqn.col in the output directory.
+ *
+ * <p>Header lines and lines whose first field is not a valid ISR are skipped.
+ */
+public class AersIngest {
+
+  private static final Pattern TABLE_FILE = Pattern.compile("(?i)(demo|drug|reac)(.*)\\.txt");
+
+  private static class Row {
+    private final long isr;
+    private final String[] fields;
+
+    public Row(long isr, String[] fields) {
+      this.isr = isr;
+      this.fields = fields;
+    }
+  }
+
+  private static final Comparator<Row> BY_ISR = new Comparator<Row>() {
+    public int compare(Row a, Row b) {
+      return a.isr < b.isr ? -1 : (a.isr == b.isr ? 0 : 1);
+    }
+  };
+
+  private static Long parseIsr(String field) {
+    try {
+      return Long.valueOf(field.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Converts the '$'-delimited lines from the given reader into a columnar
+   * table, and returns the number of rows that were written.
+   */
+  public static int ingest(Reader reader, OutputStream out) throws IOException {
+    BufferedReader in = new BufferedReader(reader);
+    List<Row> rows = Lists.newArrayList();
+    int numCols = 0;
+    int skipped = 0;
+    boolean first = true;
+    String line;
+    while ((line = in.readLine()) != null) {
+      String[] fields = line.split("\\$", -1);
+      Long isr = parseIsr(fields[0]);
+      if (isr == null) {
+        if (first) {
+          // The header line determines the number of columns.
+          numCols = fields.length;
+        } else if (!line.isEmpty()) {
+          skipped++;
+        }
+      } else {
+        rows.add(new Row(isr, fields));
+        numCols = Math.max(numCols, fields.length);
+      }
+      first = false;
+    }
+    if (skipped > 0) {
+      System.err.println("Skipped " + skipped + " lines without a valid ISR");
+    }
+
+    // The sort is stable, so the rows for each ISR stay in their original order.
+    Collections.sort(rows, BY_ISR);
+    List<Long> isrs = Lists.newArrayListWithCapacity(rows.size());
+    List<String[]> fields = Lists.newArrayListWithCapacity(rows.size());
+    for (Row row : rows) {
+      isrs.add(row.isr);
+      fields.add(row.fields);
+    }
+    ColumnarTable.write(isrs, fields, numCols, out);
+    return rows.size();
+  }
+
+  /**
+   * Returns the name of the columnar file for the given AERS file, or null if
+   * it is not a DEMO, DRUG, or REAC file.
+   */
+  public static String getOutputName(String inputName) {
+    Matcher m = TABLE_FILE.matcher(inputName);
+    if (!m.matches()) {
+      return null;
+    }
+    return (m.group(1) + m.group(2)).toLowerCase() + ".col";
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: AersIngest <input_dir> <output_dir>");
+      System.exit(1);
+    }
+    File outputDir = new File(args[1]);
+    outputDir.mkdirs();
+    File[] inputs = new File(args[0]).listFiles();
+    if (inputs == null) {
+      throw new IOException("Not a directory: " + args[0]);
+    }
+    for (File input : inputs) {
+      String name = getOutputName(input.getName());
+      if (name == null) {
+        continue;
+      }
+      // The AERS ASCII files are not UTF-8, so read them as Latin-1 to avoid
+      // losing any bytes.
+      Reader reader = new InputStreamReader(new FileInputStream(input), Charsets.ISO_8859_1);
+      OutputStream out = new BufferedOutputStream(
+          new FileOutputStream(new File(outputDir, name)));
+      try {
+        int rows = ingest(reader, out);
+        System.err.println("Wrote " + rows + " rows from " + input.getName() + " to " + name);
+      } finally {
+        reader.close();
+        out.close();
+      }
+    }
+  }
+}
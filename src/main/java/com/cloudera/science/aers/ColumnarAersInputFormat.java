@@ -0,0 +1,202 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An {@link InputFormat} over directories of {@link ColumnarTable} files that
+ * were written by {@link AersIngest}. Each quarter's demographics, drugs, and
+ * reactions files form a single split, and the record reader merge-joins them
+ * by ISR, so the value for each record is the {@link IsrMergeJoin} positioned
+ * at that record's ISR.
+ *
+ * <p>Files on the local file system are memory-mapped; files on other file
+ * systems are read into the heap.
+ */
+public class ColumnarAersInputFormat extends InputFormat<LongWritable, IsrMergeJoin> {
+
+  private static final Pattern TABLE_FILE = Pattern.compile("(demo|drug|reac)(.*)\\.col");
+
+  /**
+   * The demographics, drugs, and reactions files for a single quarter.
+   */
+  public static class QuarterSplit extends InputSplit implements Writable {
+    private String[] paths;
+    private long length;
+
+    public QuarterSplit() {
+    }
+
+    public QuarterSplit(String[] paths, long length) {
+      this.paths = paths;
+      this.length = length;
+    }
+
+    @Override
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public String[] getLocations() {
+      return new String[0];
+    }
+
+    public void write(DataOutput out) throws IOException {
+      for (String path : paths) {
+        out.writeUTF(path);
+      }
+      out.writeLong(length);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+      paths = new String[3];
+      for (int i = 0; i < paths.length; i++) {
+        paths[i] = in.readUTF();
+      }
+      length = in.readLong();
+    }
+  }
+
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    Map<String, FileStatus[]> quarters = Maps.newTreeMap();
+    for (Path dir : FileInputFormat.getInputPaths(job)) {
+      FileSystem fs = dir.getFileSystem(conf);
+      FileStatus[] files = fs.listStatus(dir);
+      if (files == null) {
+        throw new IOException("Input path does not exist: " + dir);
+      }
+      for (FileStatus file : files) {
+        Matcher m = TABLE_FILE.matcher(file.getPath().getName());
+        if (m.matches()) {
+          String quarter = dir + "/" + m.group(2);
+          if (!quarters.containsKey(quarter)) {
+            quarters.put(quarter, new FileStatus[3]);
+          }
+          int index = "demo".equals(m.group(1)) ? 0 : ("drug".equals(m.group(1)) ? 1 : 2);
+          quarters.get(quarter)[index] = file;
+        }
+      }
+    }
+
+    List<InputSplit> splits = Lists.newArrayList();
+    for (Map.Entry<String, FileStatus[]> e : quarters.entrySet()) {
+      String[] paths = new String[3];
+      long length = 0;
+      for (int i = 0; i < paths.length; i++) {
+        FileStatus file = e.getValue()[i];
+        if (file == null) {
+          throw new IOException("Missing columnar table for quarter: " + e.getKey());
+        }
+        paths[i] = file.getPath().toString();
+        length += file.getLen();
+      }
+      splits.add(new QuarterSplit(paths, length));
+    }
+    return splits;
+  }
+
+  @Override
+  public RecordReader<LongWritable, IsrMergeJoin> createRecordReader(InputSplit split,
+      TaskAttemptContext context) {
+    return new QuarterRecordReader();
+  }
+
+  /**
+   * Opens a table, memory-mapping it if it is on the local file system.
+   */
+  public static ColumnarTable openTable(Path path, Configuration conf) throws IOException {
+    FileSystem fs = path.getFileSystem(conf);
+    if ("file".equals(fs.getUri().getScheme())) {
+      return ColumnarTable.open(new File(fs.makeQualified(path).toUri().getPath()));
+    }
+    FSDataInputStream in = fs.open(path);
+    try {
+      return ColumnarTable.read(in, fs.getFileStatus(path).getLen());
+    } finally {
+      in.close();
+    }
+  }
+
+  private static class QuarterRecordReader extends RecordReader<LongWritable, IsrMergeJoin> {
+    private final LongWritable key = new LongWritable();
+    private IsrMergeJoin join;
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+      String[] paths = ((QuarterSplit) split).paths;
+      Configuration conf = context.getConfiguration();
+      this.join = new IsrMergeJoin(openTable(new Path(paths[0]), conf),
+          openTable(new Path(paths[1]), conf), openTable(new Path(paths[2]), conf));
+    }
+
+    @Override
+    public boolean nextKeyValue() {
+      if (!join.next()) {
+        return false;
+      }
+      key.set(join.getIsr());
+      return true;
+    }
+
+    @Override
+    public LongWritable getCurrentKey() {
+      return key;
+    }
+
+    @Override
+    public IsrMergeJoin getCurrentValue() {
+      return join;
+    }
+
+    @Override
+    public float getProgress() {
+      return join == null ? 0.0f : join.getProgress();
+    }
+
+    @Override
+    public void close() {
+      join = null;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A read-only, columnar copy of one AERS table for a single quarter, with its
+ * rows sorted by ISR. The file stores an index of the distinct ISRs and the
+ * first row for each one, followed by each column as an array of offsets and
+ * the concatenated UTF-8 bytes of its values. The layout is:
+ *
+ * <pre>
+ * int magic, int version, int numRows, int numCols, int numIsrs
+ * long[numIsrs] isrs
+ * int[numIsrs + 1] rowStarts
+ * for each column: int[numRows + 1] offsets, byte[offsets[numRows]] values
+ * </pre>
+ *
+ * <p>Tables are read directly from a {@link ByteBuffer}, which is usually a
+ * memory-mapped file, and values are only decoded when they are requested.
+ * Column 0 holds the ISR as it appeared in the original file.
+ */
+public class ColumnarTable {
+
+  private static final int MAGIC = 0x41455253;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 20;
+
+  private final ByteBuffer buf;
+  private final int numRows;
+  private final int numCols;
+  private final int numIsrs;
+  private final int rowStartPos;
+  private final int[] offsetPos;
+  private final int[] dataPos;
+
+  public ColumnarTable(ByteBuffer buf) throws IOException {
+    this.buf = buf;
+    if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+      throw new IOException("Not a columnar AERS table");
+    }
+    this.numRows = buf.getInt(8);
+    this.numCols = buf.getInt(12);
+    this.numIsrs = buf.getInt(16);
+    this.rowStartPos = HEADER_SIZE + 8 * numIsrs;
+    this.offsetPos = new int[numCols];
+    this.dataPos = new int[numCols];
+    int pos = rowStartPos + 4 * (numIsrs + 1);
+    for (int c = 0; c < numCols; c++) {
+      offsetPos[c] = pos;
+      dataPos[c] = pos + 4 * (numRows + 1);
+      pos = dataPos[c] + buf.getInt(offsetPos[c] + 4 * numRows);
+    }
+    if (pos > buf.limit()) {
+      throw new IOException("Truncated columnar AERS table");
+    }
+  }
+
+  /**
+   * Memory-maps the given local file.
+   */
+  public static ColumnarTable open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      return new ColumnarTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Reads a table of the given length from the stream into the heap, for file
+   * systems that do not support memory mapping.
+   */
+  public static ColumnarTable read(InputStream in, long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Columnar AERS table is too large: " + length);
+    }
+    byte[] bytes = new byte[(int) length];
+    new DataInputStream(in).readFully(bytes);
+    return new ColumnarTable(ByteBuffer.wrap(bytes));
+  }
+
+  public int getNumRows() {
+    return numRows;
+  }
+
+  public int getNumColumns() {
+    return numCols;
+  }
+
+  public int getNumIsrs() {
+    return numIsrs;
+  }
+
+  /**
+   * Returns the i-th distinct ISR in the table, in increasing order.
+   */
+  public long getIsr(int i) {
+    return buf.getLong(HEADER_SIZE + 8 * i);
+  }
+
+  /**
+   * Returns the first row for the i-th distinct ISR.
+   */
+  public int getRowStart(int i) {
+    return buf.getInt(rowStartPos + 4 * i);
+  }
+
+  /**
+   * Returns one past the last row for the i-th distinct ISR.
+   */
+  public int getRowEnd(int i) {
+    return buf.getInt(rowStartPos + 4 * (i + 1));
+  }
+
+  /**
+   * Returns the index of the given ISR, or a negative value if the table does
+   * not contain it, following the convention of
+   * {@link java.util.Arrays#binarySearch}.
+   */
+  public int findIsr(long isr) {
+    int lo = 0, hi = numIsrs - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long v = getIsr(mid);
+      if (v < isr) {
+        lo = mid + 1;
+      } else if (v > isr) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  /**
+   * Returns the value of the given column in the given row, or null if the
+   * column is empty.
+   */
+  public String get(int row, int col) {
+    int start = buf.getInt(offsetPos[col] + 4 * row);
+    int end = buf.getInt(offsetPos[col] + 4 * (row + 1));
+    if (start == end) {
+      return null;
+    }
+    if (buf.hasArray()) {
+      return new String(buf.array(), buf.arrayOffset() + dataPos[col] + start, end - start,
+          Charsets.UTF_8);
+    }
+    ByteBuffer value = buf.duplicate();
+    value.limit(dataPos[col] + end);
+    value.position(dataPos[col] + start);
+    return Charsets.UTF_8.decode(value).toString();
+  }
+
+  /**
+   * Writes a table with the given number of columns. The rows must be sorted
+   * by the ISRs in the parallel list, and rows with fewer fields than there
+   * are columns are padded with empty values.
+   */
+  public static void write(List<Long> isrs, List<String[]> rows, int numCols, OutputStream out)
+      throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    int numRows = rows.size();
+    int numIsrs = 0;
+    for (int i = 0; i < numRows; i++) {
+      if (i == 0 || !isrs.get(i).equals(isrs.get(i - 1))) {
+        numIsrs++;
+      }
+    }
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(numRows);
+    data.writeInt(numCols);
+    data.writeInt(numIsrs);
+
+    int[] rowStarts = new int[numIsrs + 1];
+    int index = 0;
+    for (int i = 0; i < numRows; i++) {
+      if (i == 0 || !isrs.get(i).equals(isrs.get(i - 1))) {
+        if (i > 0 && isrs.get(i) < isrs.get(i - 1)) {
+          throw new IllegalArgumentException("Rows are not sorted by ISR");
+        }
+        data.writeLong(isrs.get(i));
+        rowStarts[index++] = i;
+      }
+    }
+    rowStarts[numIsrs] = numRows;
+    for (int start : rowStarts) {
+      data.writeInt(start);
+    }
+
+    for (int c = 0; c < numCols; c++) {
+      byte[][] values = new byte[numRows][];
+      int offset = 0;
+      data.writeInt(offset);
+      for (int i = 0; i < numRows; i++) {
+        String[] row = rows.get(i);
+        values[i] = c < row.length ? row[c].getBytes(Charsets.UTF_8) : new byte[0];
+        offset += values[i].length;
+        data.writeInt(offset);
+      }
+      for (byte[] value : values) {
+        data.write(value);
+      }
+    }
+    data.flush();
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+/**
+ * An inner merge join of the demographics, drugs, and reactions tables for a
+ * quarter on their ISRs. Since all three {@link ColumnarTable}s are sorted by
+ * ISR, the join is a single pass over their ISR indices, and it returns the
+ * ISRs that appear in all three tables in increasing order.
+ */
+public class IsrMergeJoin {
+
+  private final ColumnarTable demos;
+  private final ColumnarTable drugs;
+  private final ColumnarTable reacs;
+  private int demoIndex = -1;
+  private int drugIndex = 0;
+  private int reacIndex = 0;
+
+  public IsrMergeJoin(ColumnarTable demos, ColumnarTable drugs, ColumnarTable reacs) {
+    this.demos = demos;
+    this.drugs = drugs;
+    this.reacs = reacs;
+  }
+
+  /**
+   * Advances to the next ISR that is in all three tables, returning false when
+   * there are no more ISRs.
+   */
+  public boolean next() {
+    while (++demoIndex < demos.getNumIsrs()) {
+      long isr = demos.getIsr(demoIndex);
+      while (drugIndex < drugs.getNumIsrs() && drugs.getIsr(drugIndex) < isr) {
+        drugIndex++;
+      }
+      while (reacIndex < reacs.getNumIsrs() && reacs.getIsr(reacIndex) < isr) {
+        reacIndex++;
+      }
+      if (drugIndex == drugs.getNumIsrs() || reacIndex == reacs.getNumIsrs()) {
+        demoIndex = demos.getNumIsrs();
+        return false;
+      }
+      if (drugs.getIsr(drugIndex) == isr && reacs.getIsr(reacIndex) == isr) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The fraction of the demographics table that has been processed.
+   */
+  public float getProgress() {
+    return demos.getNumIsrs() == 0 ? 1.0f :
+        Math.min(1.0f, (demoIndex + 1) / (float) demos.getNumIsrs());
+  }
+
+  public ColumnarTable getDemos() {
+    return demos;
+  }
+
+  public ColumnarTable getDrugs() {
+    return drugs;
+  }
+
+  public ColumnarTable getReacs() {
+    return reacs;
+  }
+
+  public long getIsr() {
+    return demos.getIsr(demoIndex);
+  }
+
+  /**
+   * The first demographics row for the current ISR.
+   */
+  public int getDemoRow() {
+    return demos.getRowStart(demoIndex);
+  }
+
+  public int getDrugRowStart() {
+    return drugs.getRowStart(drugIndex);
+  }
+
+  public int getDrugRowEnd() {
+    return drugs.getRowEnd(drugIndex);
+  }
+
+  public int getReacRowStart() {
+    return reacs.getRowStart(reacIndex);
+  }
+
+  public int getReacRowEnd() {
+    return reacs.getRowEnd(reacIndex);
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+
+/**
+ * Generates synthetic AERS data in the same "$"-delimited layout as the ASCII
+ * files from the FDA, for testing the pipeline at larger scales than the real
+ * data. For each quarter, it writes DEMOyyQn.TXT, DRUGyyQn.TXT, and
+ * REACyyQn.TXT files, each with a header line, starting with the first
+ * quarter of 2008.
+ *
+ * <p>The data has the kinds of skew that drive the cost of the pipeline:
+ * <ul>
+ * <li>drug and reaction popularity follow Zipf distributions,
+ * <li>the number of drugs per report is heavy-tailed, so a few reports have
+ * many drugs and generate most of the drug pairs,
+ * <li>some reports are follow-ups to an earlier case, so cases have multiple
+ * ISRs with the same case identifier, and
+ * <li>some demographics records are invalid in the ways that step 1 filters
+ * out, e.g., unknown gender, a non-year age code, or an out-of-range age.
+ * </ul>
+ */
+public class SyntheticAers {
+
+  private static final String DEMO_HEADER = "ISR$CASE$I_F_COD$FOLL_SEQ$IMAGE$EVENT_DT$" +
+      "MFR_DT$FDA_DT$REPT_COD$MFR_NUM$MFR_SNDR$AGE$AGE_COD$GNDR_COD$E_SUB$WT$WT_COD$" +
+      "REPT_DT$OCCP_COD$DEATH_DT$TO_MFR$CONFID$REPORTER_COUNTRY";
+  private static final String DRUG_HEADER = "ISR$DRUG_SEQ$ROLE_COD$DRUGNAME$VAL_VBM$" +
+      "ROUTE$DOSE_VBM$DECHAL$RECHAL$LOT_NUM$EXP_DT$NDA_NUM";
+  private static final String REAC_HEADER = "ISR$PT";
+
+  private static final long FIRST_ISR = 5000000L;
+  private static final int MAX_DRUGS_PER_REPORT = 100;
+  private static final int MAX_REACS_PER_REPORT = 20;
+  private static final double FOLLOW_UP_RATE = 0.1;
+  private static final double INVALID_RATE = 0.05;
+  private static final int RECENT_CASES = 10000;
+
+  /**
+   * Samples ranks in [0, n) from a Zipf distribution with the given exponent.
+   */
+  static class Zipf {
+    private final double[] cdf;
+
+    public Zipf(int n, double exponent) {
+      this.cdf = new double[n];
+      double sum = 0.0;
+      for (int i = 0; i < n; i++) {
+        sum += 1.0 / Math.pow(i + 1, exponent);
+        cdf[i] = sum;
+      }
+      for (int i = 0; i < n; i++) {
+        cdf[i] /= sum;
+      }
+    }
+
+    public int sample(Random rand) {
+      int index = Arrays.binarySearch(cdf, rand.nextDouble());
+      return Math.min(cdf.length - 1, index < 0 ? -index - 1 : index);
+    }
+  }
+
+  private final Random rand;
+  private final Zipf drugs;
+  private final Zipf reacs;
+  private final long[] recentCases = new long[RECENT_CASES];
+  private int numCases;
+  private long nextIsr = FIRST_ISR;
+
+  public SyntheticAers(long seed, int numDrugs, int numReactions) {
+    this.rand = new Random(seed);
+    this.drugs = new Zipf(numDrugs, 1.1);
+    this.reacs = new Zipf(numReactions, 1.0);
+  }
+
+  /**
+   * Samples from a discrete, Pareto-like distribution with P(X >= k) ~ k^-shape.
+   */
+  private int heavyTailed(double shape, int max) {
+    double u = 1.0 - rand.nextDouble();
+    return (int) Math.min(max, Math.floor(Math.pow(u, -1.0 / shape)));
+  }
+
+  private static String pad(int value, int width) {
+    StringBuilder sb = new StringBuilder(String.valueOf(value));
+    while (sb.length() < width) {
+      sb.insert(0, '0');
+    }
+    return sb.toString();
+  }
+
+  private static void writeLine(Writer out, Object... fields) throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        out.write('$');
+      }
+      out.write(fields[i] == null ? "" : fields[i].toString());
+    }
+    out.write('\n');
+  }
+
+  private void writeDemo(Writer out, long isr, long caseId, int followUp, String fdaDate)
+      throws IOException {
+    Object age = 18 + rand.nextInt(70);
+    String ageCode = "YR";
+    String gender = rand.nextBoolean() ? "M" : "F";
+    if (rand.nextDouble() < INVALID_RATE) {
+      switch (rand.nextInt(4)) {
+      case 0: gender = "UNK"; break;
+      case 1: ageCode = "MON"; break;
+      case 2: age = 150; break;
+      default: age = null; break;
+      }
+    }
+    writeLine(out, isr, caseId, followUp == 0 ? "I" : "F",
+        followUp == 0 ? null : followUp, null, fdaDate, fdaDate, fdaDate, "EXP",
+        "MFR-" + caseId, "SYNTHETIC", age, ageCode, gender, "Y", null, null, fdaDate,
+        "MD", null, null, "N", "US");
+  }
+
+  private void writeDrugs(Writer out, long isr) throws IOException {
+    int numDrugs = heavyTailed(1.5, MAX_DRUGS_PER_REPORT);
+    Set<Integer> seen = Sets.newHashSet();
+    for (int seq = 1; seen.size() < numDrugs && seq <= 4 * MAX_DRUGS_PER_REPORT; seq++) {
+      int drug = drugs.sample(rand);
+      if (seen.add(drug)) {
+        writeLine(out, isr, seen.size(), seen.size() == 1 ? "PS" : "SS",
+            "DRUG" + pad(drug, 6), 1, "ORAL", null, "U", "U", null, null, null);
+      }
+    }
+  }
+
+  private void writeReacs(Writer out, long isr) throws IOException {
+    int numReacs = heavyTailed(2.0, MAX_REACS_PER_REPORT);
+    Set<Integer> seen = Sets.newHashSet();
+    for (int i = 0; seen.size() < numReacs && i < 4 * MAX_REACS_PER_REPORT; i++) {
+      int reac = reacs.sample(rand);
+      if (seen.add(reac)) {
+        writeLine(out, isr, "REACTION " + pad(reac, 5));
+      }
+    }
+  }
+
+  private static Writer open(File dir, String name) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(new File(dir, name)), Charsets.US_ASCII));
+  }
+
+  /**
+   * Writes the given number of reports for the given quarter, where quarter 0
+   * is the first quarter of 2008.
+   */
+  public void writeQuarter(File dir, int quarter, int numReports) throws IOException {
+    int year = 2008 + quarter / 4;
+    String suffix = pad(year % 100, 2) + "Q" + (quarter % 4 + 1) + ".TXT";
+    Writer demo = open(dir, "DEMO" + suffix);
+    Writer drug = open(dir, "DRUG" + suffix);
+    Writer reac = open(dir, "REAC" + suffix);
+    try {
+      demo.write(DEMO_HEADER + "\n");
+      drug.write(DRUG_HEADER + "\n");
+      reac.write(REAC_HEADER + "\n");
+      for (int i = 0; i < numReports; i++) {
+        long isr = nextIsr++;
+        long caseId;
+        int followUp = 0;
+        if (numCases > 0 && rand.nextDouble() < FOLLOW_UP_RATE) {
+          caseId = recentCases[rand.nextInt(Math.min(numCases, RECENT_CASES))];
+          followUp = 1 + rand.nextInt(3);
+        } else {
+          caseId = isr - FIRST_ISR + 1;
+          recentCases[numCases++ % RECENT_CASES] = caseId;
+        }
+        int month = 3 * (quarter % 4) + 1 + rand.nextInt(3);
+        String fdaDate = year + pad(month, 2) + pad(1 + rand.nextInt(28), 2);
+        writeDemo(demo, isr, caseId, followUp, fdaDate);
+        writeDrugs(drug, isr);
+        writeReacs(reac, isr);
+      }
+    } finally {
+      demo.close();
+      drug.close();
+      reac.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 6) {
+      System.err.println("Usage: SyntheticAers <output_dir> <reports_per_quarter> " +
+          "[num_quarters] [num_drugs] [num_reactions] [seed]");
+      System.exit(1);
+    }
+    File dir = new File(args[0]);
+    dir.mkdirs();
+    int numReports = Integer.valueOf(args[1]);
+    int numQuarters = args.length > 2 ? Integer.valueOf(args[2]) : 4;
+    int numDrugs = args.length > 3 ? Integer.valueOf(args[3]) : 5000;
+    int numReactions = args.length > 4 ? Integer.valueOf(args[4]) : 2000;
+    long seed = args.length > 5 ? Long.valueOf(args[5]) : 42L;
+    SyntheticAers aers = new SyntheticAers(seed, numDrugs, numReactions);
+    for (int q = 0; q < numQuarters; q++) {
+      aers.writeQuarter(dir, q, numReports);
+    }
+  }
+}
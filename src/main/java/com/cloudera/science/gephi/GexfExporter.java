@@ -0,0 +1,199 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.gephi;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Writes a Gephi GEXF file of drug-drug relationships from the scored
+ * drug-drug-reaction triples that are the output of step 4 of the pipeline.
+ *
+ * <p>The input must be sorted by (d1, d2), e.g., by
+ * step5_order_by_drug_pair.pig, so that all of the reactions for a drug pair
+ * are adjacent and each edge can be written as soon as the next pair is seen. The only state that is kept in memory is the dictionary of
+ * drug names to node identifiers; the edges are spooled to a temporary file
+ * and copied into the output after the nodes have been written, since GEXF
+ * requires the nodes to come first.
+ */
+public class GexfExporter {
+
+  private static final String HEADER =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+      "<gexf xmlns=\"http://www.gexf.net/1.2draft\"\n" +
+      " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+      " xsi:schemaLocation=\"http://www.gexf.net/1.2draft http://www.gexf.net/1.2draft/gexf.xsd\"\n" +
+      " version=\"1.2\">\n" +
+      "  <meta>\n" +
+      "    <creator>Cloudera</creator>\n" +
+      "    <description>A network of drug-drug relationships</description>\n" +
+      "  </meta>\n" +
+      "  <graph defaultedgetype=\"undirected\">\n" +
+      "    <attributes class=\"edge\">\n" +
+      "      <attribute id=\"0\" title=\"reactions\" type=\"string\"/>\n" +
+      "    </attributes>\n";
+
+  private static final int WEIGHT_FIELD = 7;
+
+  private final Map<String, Integer> drugIds = Maps.newHashMap();
+  private final List<String> drugs = Lists.newArrayList();
+
+  /**
+   * Reads '$'-delimited scored triples from the given input and writes the
+   * GEXF document to the given output.
+   */
+  public void export(Reader input, Writer output) throws IOException {
+    drugIds.clear();
+    drugs.clear();
+    File spool = File.createTempFile("edges", ".gexf");
+    try {
+      Writer edges = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(spool), Charsets.UTF_8));
+      try {
+        writeEdges(new BufferedReader(input), edges);
+      } finally {
+        edges.close();
+      }
+
+      output.write(HEADER);
+      output.write("    <nodes>\n");
+      for (int i = 0; i < drugs.size(); i++) {
+        output.write("      <node id=\"" + i + "\" label=\"" + escape(drugs.get(i)) + "\"/>\n");
+      }
+      output.write("    </nodes>\n");
+      output.write("    <edges>\n");
+      Reader spooled = new InputStreamReader(new FileInputStream(spool), Charsets.UTF_8);
+      try {
+        char[] buf = new char[8192];
+        int read;
+        while ((read = spooled.read(buf)) != -1) {
+          output.write(buf, 0, read);
+        }
+      } finally {
+        spooled.close();
+      }
+      output.write("    </edges>\n");
+      output.write("  </graph>\n");
+      output.write("</gexf>\n");
+      output.flush();
+    } finally {
+      spool.delete();
+    }
+  }
+
+  private void writeEdges(BufferedReader input, Writer edges) throws IOException {
+    String prevD1 = null, prevD2 = null;
+    StringBuilder reactions = new StringBuilder();
+    double weight = 0.0;
+    int edgeId = 0;
+    String line;
+    while ((line = input.readLine()) != null) {
+      String[] row = line.split("\\$", -1);
+      if (row.length <= WEIGHT_FIELD) {
+        throw new IOException("Expected " + (WEIGHT_FIELD + 1) + " fields, but got: " + line);
+      }
+      String d1 = row[0], d2 = row[1];
+      if (d1.contains("/") || d2.contains("/")) {
+        continue;
+      }
+
+      if (!d1.equals(prevD1) || !d2.equals(prevD2)) {
+        if (prevD1 != null) {
+          int c = prevD1.compareTo(d1);
+          if (c > 0 || (c == 0 && prevD2.compareTo(d2) > 0)) {
+            throw new IOException("Input is not sorted by (d1, d2) at: " + line);
+          }
+          writeEdge(edges, edgeId++, prevD1, prevD2, weight, reactions);
+        }
+        prevD1 = d1;
+        prevD2 = d2;
+        reactions.setLength(0);
+        weight = Double.NEGATIVE_INFINITY;
+      } else {
+        reactions.append('$');
+      }
+      reactions.append(row[2]);
+      weight = Math.max(weight, Double.valueOf(row[WEIGHT_FIELD]));
+    }
+    if (prevD1 != null) {
+      writeEdge(edges, edgeId, prevD1, prevD2, weight, reactions);
+    }
+  }
+
+  private void writeEdge(Writer edges, int edgeId, String d1, String d2,
+      double weight, CharSequence reactions) throws IOException {
+    edges.write(String.format("      <edge id=\"%d\" source=\"%d\" target=\"%d\" weight=\"%.2f\">\n",
+        edgeId, getDrugId(d1), getDrugId(d2), weight));
+    edges.write("        <attvalues><attvalue for=\"0\" value=\"" + escape(reactions) +
+        "\"/></attvalues>\n");
+    edges.write("      </edge>\n");
+  }
+
+  private int getDrugId(String drug) {
+    Integer id = drugIds.get(drug);
+    if (id == null) {
+      id = drugs.size();
+      drugIds.put(drug, id);
+      drugs.add(drug);
+    }
+    return id;
+  }
+
+  private static String escape(CharSequence value) {
+    StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '&': sb.append("&amp;"); break;
+      case '<': sb.append("&lt;"); break;
+      case '>': sb.append("&gt;"); break;
+      case '"': sb.append("&quot;"); break;
+      default: sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: GexfExporter <sorted_scored_triples> <output.gexf>");
+      System.exit(1);
+    }
+    Reader input = new InputStreamReader(new FileInputStream(args[0]), Charsets.UTF_8);
+    Writer output = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(args[1]), Charsets.UTF_8));
+    try {
+      new GexfExporter().export(input, output);
+    } finally {
+      input.close();
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.mgps;
+
+import org.apache.commons.math.special.Gamma;
+
+/**
+ * The additive statistics for one iteration of the EM algorithm that fits the
+ * MGPS hyperparameters, accumulated over a set of (n, e, weight) observations
+ * at the current {@link Parameters}. Because the statistics are sums over the
+ * observations, partial statistics that are computed over disjoint subsets of
+ * the data may be combined with {@link #merge}, which allows the E-step to be
+ * distributed across a cluster.
+ *
+ * <p>As in the R code in ebgm.R, the likelihood of each observation is
+ * truncated to the values of n that are at least nstar, the minimum count in
+ * the data. For each mixture component, the statistics are the
+ * responsibility-weighted score of its (log alpha, log beta) parameters and
+ * the responsibility-weighted outer product of that score, which
+ * {@link #maximize} uses to take a BHHH (outer-product Newton) step for the
+ * M-step, since the gamma parameters have no closed-form update. The step is
+ * an ascent direction for the log-likelihood, but a full step may overshoot,
+ * so callers should retry with a smaller step size if the log-likelihood at
+ * the updated parameters decreases.
+ */
+public class EMStatistics {
+
+  /** The number of values returned by {@link #toArray}. */
+  public static final int SIZE = 13;
+
+  private static final double MAX_STEP = 2.0;
+
+  private final Parameters params;
+  private final int nstar;
+  private final NFunction n1;
+  private final NFunction n2;
+
+  // [sum(w), sum(w * r1), loglik, then the score (2) and outer product (3) of
+  // each component]
+  private final double[] stats = new double[SIZE];
+
+  public EMStatistics(Parameters params, int nstar) {
+    this.params = params;
+    this.nstar = nstar;
+    this.n1 = new NFunction(params.getAlpha1(), params.getBeta1());
+    this.n2 = new NFunction(params.getAlpha2(), params.getBeta2());
+  }
+
+  /**
+   * Computes the log of the truncated density of n given e for one component,
+   * and stores the score of (log alpha, log beta) in the given array.
+   */
+  private double logDensity(int n, double e, NFunction f, double alpha, double beta,
+      double[] score) {
+    double logF = f.logEval(n, e);
+    score[0] = alpha * dLogAlpha(n, e, alpha, beta);
+    score[1] = beta * dLogBeta(n, e, alpha, beta);
+    if (nstar > 0) {
+      double g = 1.0, dga = 0.0, dgb = 0.0;
+      for (int x = 0; x < nstar; x++) {
+        double fx = f.eval(x, e);
+        g -= fx;
+        dga -= fx * alpha * dLogAlpha(x, e, alpha, beta);
+        dgb -= fx * beta * dLogBeta(x, e, alpha, beta);
+      }
+      logF -= Math.log(g);
+      score[0] -= dga / g;
+      score[1] -= dgb / g;
+    }
+    return logF;
+  }
+
+  private static double dLogAlpha(int n, double e, double alpha, double beta) {
+    return Gamma.digamma(alpha + n) - Gamma.digamma(alpha) - Math.log(1 + e / beta);
+  }
+
+  private static double dLogBeta(int n, double e, double alpha, double beta) {
+    return -n / (e + beta) + alpha * e / (beta * (beta + e));
+  }
+
+  /**
+   * Adds an observation of n with expected count e and the given weight.
+   */
+  public void add(int n, double e, double weight) {
+    double[] s1 = new double[2];
+    double[] s2 = new double[2];
+    double l1 = Math.log(params.getP()) +
+        logDensity(n, e, n1, params.getAlpha1(), params.getBeta1(), s1);
+    double l2 = Math.log(1.0 - params.getP()) +
+        logDensity(n, e, n2, params.getAlpha2(), params.getBeta2(), s2);
+    double max = Math.max(l1, l2);
+    double ll = max + Math.log(Math.exp(l1 - max) + Math.exp(l2 - max));
+    double r1 = Math.exp(l1 - ll);
+
+    stats[0] += weight;
+    stats[1] += weight * r1;
+    stats[2] += weight * ll;
+    accumulate(3, weight * r1, s1);
+    accumulate(8, weight * (1.0 - r1), s2);
+  }
+
+  private void accumulate(int offset, double w, double[] score) {
+    if (w == 0.0) {
+      return;
+    }
+    stats[offset] += w * score[0];
+    stats[offset + 1] += w * score[1];
+    stats[offset + 2] += w * score[0] * score[0];
+    stats[offset + 3] += w * score[0] * score[1];
+    stats[offset + 4] += w * score[1] * score[1];
+  }
+
+  /**
+   * Adds the statistics in the given array, which was created by
+   * {@link #toArray}, to these statistics.
+   */
+  public void merge(double[] other) {
+    for (int i = 0; i < SIZE; i++) {
+      stats[i] += other[i];
+    }
+  }
+
+  public double[] toArray() {
+    return stats.clone();
+  }
+
+  /**
+   * The log-likelihood of the observations at the current parameters.
+   */
+  public double getLogLikelihood() {
+    return stats[2];
+  }
+
+  /**
+   * Performs the M-step, returning the updated parameters.
+   */
+  public Parameters maximize() {
+    return maximize(1.0);
+  }
+
+  /**
+   * Performs the M-step with the given fraction of the full step from the
+   * current parameters.
+   */
+  public Parameters maximize(double stepSize) {
+    double p = stats[0] > 0.0 ? stats[1] / stats[0] : params.getP();
+    p = params.getP() + stepSize * (p - params.getP());
+    double[] c1 = step(3, params.getAlpha1(), params.getBeta1(), stepSize);
+    double[] c2 = step(8, params.getAlpha2(), params.getBeta2(), stepSize);
+    return new Parameters(c1[0], c1[1], c2[0], c2[1], p);
+  }
+
+  private double[] step(int offset, double alpha, double beta, double stepSize) {
+    double ga = stats[offset], gb = stats[offset + 1];
+    double haa = stats[offset + 2], hab = stats[offset + 3], hbb = stats[offset + 4];
+    double det = haa * hbb - hab * hab;
+    if (!(det > 0.0)) {
+      return new double[] { alpha, beta };
+    }
+    double du = stepSize * clamp((hbb * ga - hab * gb) / det);
+    double dv = stepSize * clamp((haa * gb - hab * ga) / det);
+    return new double[] { alpha * Math.exp(du), beta * Math.exp(dv) };
+  }
+
+  private static double clamp(double step) {
+    return Math.max(-MAX_STEP, Math.min(MAX_STEP, step));
+  }
+}
@@ -34,10 +34,18 @@ public class NFunction {
   }
   
   public double eval(int n, double e) {
+    return Math.exp(logEval(n, e));
+  }
+  
+  /**
+   * Returns the natural log of {@link #eval}, which remains finite for large
+   * values of n where the function itself underflows.
+   */
+  public double logEval(int n, double e) {
     double x = -n * Math.log(1 + beta / e);
     double y = -alpha * Math.log(1 + e / beta);
     double z = Gamma.logGamma(alpha + n);
     double d = Gamma.logGamma(alpha) + MathUtils.factorialLog(n);
-    return Math.exp(x + y + z - d);
-  }    
+    return x + y + z - d;
+  }
 }
\ No newline at end of file
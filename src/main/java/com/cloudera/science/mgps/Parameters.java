@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.mgps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A fitted set of (alpha1, beta1, alpha2, beta2, p) hyperparameters for the
+ * two-component gamma mixture prior used by the MGPS model.
+ */
+public class Parameters {
+  private final double alpha1;
+  private final double beta1;
+  private final double alpha2;
+  private final double beta2;
+  private final double p;
+
+  public Parameters(double alpha1, double beta1, double alpha2, double beta2, double p) {
+    this.alpha1 = alpha1;
+    this.beta1 = beta1;
+    this.alpha2 = alpha2;
+    this.beta2 = beta2;
+    this.p = p;
+  }
+
+  /**
+   * Parses the five parameters, in order, from a string of values separated
+   * by commas and/or whitespace.
+   */
+  public static Parameters parse(String value) {
+    String[] pieces = value.trim().split("[,\\s]+");
+    if (pieces.length != 5) {
+      throw new IllegalArgumentException(
+          "Expected (alpha1, beta1, alpha2, beta2, p), but got: " + value);
+    }
+    double[] v = new double[5];
+    for (int i = 0; i < 5; i++) {
+      v[i] = Double.valueOf(pieces[i]);
+    }
+    return new Parameters(v[0], v[1], v[2], v[3], v[4]);
+  }
+
+  /**
+   * Reads the parameters from the first line of the given file that is
+   * neither blank nor a '#' comment.
+   */
+  public static Parameters read(File file) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(file), Charsets.UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          return parse(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    throw new IOException("No parameters found in " + file);
+  }
+
+  public double getAlpha1() {
+    return alpha1;
+  }
+
+  public double getBeta1() {
+    return beta1;
+  }
+
+  public double getAlpha2() {
+    return alpha2;
+  }
+
+  public double getBeta2() {
+    return beta2;
+  }
+
+  public double getP() {
+    return p;
+  }
+
+  @Override
+  public String toString() {
+    return alpha1 + "," + beta1 + "," + alpha2 + "," + beta2 + "," + p;
+  }
+}
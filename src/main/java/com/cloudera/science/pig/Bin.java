@@ -17,7 +17,7 @@
 package com.cloudera.science.pig;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.pig.EvalFunc;
@@ -62,11 +62,11 @@ public class Bin extends EvalFunc<DataBag> {
     if (!(o2 instanceof DataBag)) {
       throw new IOException("Expected second input to be a bag, but got: " + o2.getClass());
     }
-    List<Double> quantiles = getQuantiles((DataBag) o2);
+    double[] quantiles = getQuantiles((DataBag) o2);
     for (Tuple t : inputBag) {
       if (t != null && t.get(0) != null) {
         double val = ((Number)t.get(0)).doubleValue();
-        int index = Collections.binarySearch(quantiles, val);
+        int index = Arrays.binarySearch(quantiles, val);
         if (index > -1) {
           t = tupleFactory.newTuple(ImmutableList.of(index, t.get(0)));
         } else {
@@ -129,14 +129,16 @@ public class Bin extends EvalFunc<DataBag> {
     }
   }
 
-  private List<Double> getQuantiles(DataBag bag) throws ExecException {
-    List<Double> quantiles = Lists.newArrayList();
+  private double[] getQuantiles(DataBag bag) throws ExecException {
+    double[] quantiles = new double[(int) bag.size()];
+    int size = 0;
     for (Tuple t : bag) {
       if (t != null && t.get(0) != null) {
-        quantiles.add(((Number)t.get(0)).doubleValue());
+        quantiles[size++] = ((Number)t.get(0)).doubleValue();
       }
     }
-    Collections.sort(quantiles);
+    quantiles = Arrays.copyOf(quantiles, size);
+    Arrays.sort(quantiles);
     return quantiles;
   }
 }
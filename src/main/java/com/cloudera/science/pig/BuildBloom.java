@@ -0,0 +1,189 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+/**
+ * An algebraic Pig UDF that builds a Bloom filter over a bag of numeric keys,
+ * such as ISRs, and returns it as a {@link DataByteArray}. The constructor
+ * arguments are the expected number of keys and the desired false positive
+ * rate, which determine the size of the filter and the number of hash
+ * functions. The initial function passes the keys through as they are, and
+ * the intermediate and final functions add them to a filter and OR together
+ * any partial filters, so only one filter is allocated per combiner or reducer
+ * call rather than one for every input record.
+ *
+ * <p>The filter is usually built from a {@code GROUP ... ALL} relation and
+ * passed as a scalar to the {@link InBloom} function, which uses it to prune
+ * a relation before a join.
+ */
+public class BuildBloom extends EvalFunc<DataByteArray> implements Algebraic {
+
+  private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+
+  private final String[] args;
+
+  public BuildBloom(String numElements, String falsePositiveRate) {
+    this.args = new String[] { numElements, falsePositiveRate };
+  }
+
+  /**
+   * Creates an empty filter with the optimal number of bits and hash functions
+   * for the given number of elements and false positive rate.
+   */
+  static BloomFilter create(int numElements, double falsePositiveRate) {
+    int n = Math.max(1, numElements);
+    double ln2 = Math.log(2.0);
+    int vectorSize = (int) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+    int numHashes = Math.max(1, (int) Math.round(ln2 * vectorSize / n));
+    return new BloomFilter(vectorSize, numHashes, Hash.MURMUR_HASH);
+  }
+
+  static Key toKey(long value) {
+    byte[] bytes = new byte[8];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (value >>> (56 - 8 * i));
+    }
+    return new Key(bytes);
+  }
+
+  static BloomFilter read(InputStream in) throws IOException {
+    BloomFilter filter = new BloomFilter();
+    filter.readFields(new DataInputStream(in));
+    return filter;
+  }
+
+  private static DataByteArray toBytes(BloomFilter filter) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    filter.write(out);
+    out.close();
+    return new DataByteArray(bytes.toByteArray());
+  }
+
+  private static BloomFilter add(String[] args, DataBag bag) throws IOException {
+    BloomFilter filter = create(Integer.valueOf(args[0]), Double.valueOf(args[1]));
+    for (Tuple t : bag) {
+      if (t != null && t.get(0) != null) {
+        filter.add(toKey(((Number) t.get(0)).longValue()));
+      }
+    }
+    return filter;
+  }
+
+  /**
+   * Combines the outputs of the initial and intermediate functions, each of
+   * which is either a single key or a serialized partial filter.
+   */
+  private static BloomFilter merge(String[] args, DataBag bag) throws IOException {
+    BloomFilter filter = create(Integer.valueOf(args[0]), Double.valueOf(args[1]));
+    for (Tuple t : bag) {
+      Object value = t.get(0);
+      if (value instanceof DataByteArray) {
+        filter.or(read(new ByteArrayInputStream(((DataByteArray) value).get())));
+      } else if (value != null) {
+        filter.add(toKey(((Number) value).longValue()));
+      }
+    }
+    return filter;
+  }
+
+  @Override
+  public DataByteArray exec(Tuple input) throws IOException {
+    return toBytes(add(args, (DataBag) input.get(0)));
+  }
+
+  public String getInitial() {
+    return Initial.class.getName();
+  }
+
+  public String getIntermed() {
+    return Intermediate.class.getName();
+  }
+
+  public String getFinal() {
+    return Final.class.getName();
+  }
+
+  public static class Initial extends EvalFunc<Tuple> {
+    private final String[] args;
+
+    public Initial(String numElements, String falsePositiveRate) {
+      this.args = new String[] { numElements, falsePositiveRate };
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+      DataBag bag = (DataBag) input.get(0);
+      if (bag.size() == 1) {
+        // Pig calls the initial function once per record, so the key is passed
+        // through instead of being serialized into a full-sized filter.
+        Tuple t = bag.iterator().next();
+        return tupleFactory.newTuple(t == null ? null : t.get(0));
+      }
+      return tupleFactory.newTuple(toBytes(add(args, bag)));
+    }
+  }
+
+  public static class Intermediate extends EvalFunc<Tuple> {
+    private final String[] args;
+
+    public Intermediate(String numElements, String falsePositiveRate) {
+      this.args = new String[] { numElements, falsePositiveRate };
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+      return tupleFactory.newTuple(toBytes(merge(args, (DataBag) input.get(0))));
+    }
+  }
+
+  public static class Final extends EvalFunc<DataByteArray> {
+    private final String[] args;
+
+    public Final(String numElements, String falsePositiveRate) {
+      this.args = new String[] { numElements, falsePositiveRate };
+    }
+
+    @Override
+    public DataByteArray exec(Tuple input) throws IOException {
+      return toBytes(merge(args, (DataBag) input.get(0)));
+    }
+  }
+
+  @Override
+  public Schema outputSchema(Schema input) {
+    return new Schema(new Schema.FieldSchema("bloom", DataType.BYTEARRAY));
+  }
+}
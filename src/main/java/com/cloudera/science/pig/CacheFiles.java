@@ -0,0 +1,57 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.pig.impl.io.FileLocalizer;
+
+/**
+ * Helpers for UDFs that ship a side file to their tasks via the distributed
+ * cache (see {@link org.apache.pig.EvalFunc#getCacheFiles()}).
+ */
+final class CacheFiles {
+
+  private CacheFiles() {}
+
+  /**
+   * Returns the distributed cache specification for the given path, which
+   * links the file into the task's working directory.
+   */
+  static String toCacheSpec(String path) {
+    return path + "#" + symlink(path);
+  }
+
+  /**
+   * Opens the given file from the task's working directory if it was shipped
+   * via the distributed cache, or directly from the file system otherwise
+   * (e.g., when Pig is running in local mode).
+   */
+  static InputStream open(String path) throws IOException {
+    File local = new File(symlink(path));
+    if (local.exists()) {
+      return new FileInputStream(local);
+    }
+    return FileLocalizer.openDFSFile(path);
+  }
+
+  private static String symlink(String path) {
+    return path.replaceAll("[^A-Za-z0-9_.-]", "_");
+  }
+}
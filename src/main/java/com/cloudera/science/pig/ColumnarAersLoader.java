@@ -0,0 +1,160 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.pig.Expression;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigSplit;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.util.Utils;
+
+import com.cloudera.science.aers.ColumnarAersInputFormat;
+import com.cloudera.science.aers.ColumnarTable;
+import com.cloudera.science.aers.IsrMergeJoin;
+import com.google.common.collect.Lists;
+
+/**
+ * A Pig loader for the columnar AERS files written by
+ * {@link com.cloudera.science.aers.AersIngest}. It returns one record for each
+ * ISR that has demographics, drugs, and reactions, with the fields that step 1
+ * uses from the demographics table and bags of the drug names and reaction
+ * codes for the report:
+ *
+ * <pre>
+ * (isr: long, case_id: int, fda_dt: chararray, age: long, age_code: chararray,
+ *  gender: chararray, drugs: {(name: chararray)}, reacs: {(code: chararray)})
+ * </pre>
+ *
+ * <p>Since the tables for each quarter are sorted by ISR, the records are
+ * produced by a merge join in the mappers, which replaces both the parsing of
+ * the text files and the COGROUP by ISR in step 1.
+ */
+public class ColumnarAersLoader extends LoadFunc implements LoadMetadata {
+
+  private static final String SCHEMA = "isr: long, case_id: int, fda_dt: chararray, " +
+      "age: long, age_code: chararray, gender: chararray, " +
+      "drugs: {t: (name: chararray)}, reacs: {t: (code: chararray)}";
+
+  // Field indices in the DEMO, DRUG, and REAC files.
+  private static final int DEMO_CASE_ID = 1;
+  private static final int DEMO_FDA_DT = 7;
+  private static final int DEMO_AGE = 11;
+  private static final int DEMO_AGE_CODE = 12;
+  private static final int DEMO_GENDER = 13;
+  private static final int DRUG_NAME = 3;
+  private static final int REAC_CODE = 1;
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+  private final BagFactory bagFactory = BagFactory.getInstance();
+  private RecordReader<?, ?> reader;
+
+  @Override
+  public void setLocation(String location, Job job) throws IOException {
+    FileInputFormat.setInputPaths(job, location);
+  }
+
+  @Override
+  public InputFormat<?, ?> getInputFormat() {
+    return new ColumnarAersInputFormat();
+  }
+
+  @Override
+  public void prepareToRead(@SuppressWarnings("rawtypes") RecordReader reader, PigSplit split) {
+    this.reader = reader;
+  }
+
+  private static Integer toInt(String value) {
+    Long v = toLong(value);
+    return v == null ? null : v.intValue();
+  }
+
+  private static Long toLong(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.valueOf(value.trim());
+    } catch (NumberFormatException e) {
+      try {
+        return (long) Double.parseDouble(value.trim());
+      } catch (NumberFormatException e2) {
+        return null;
+      }
+    }
+  }
+
+  private DataBag toBag(ColumnarTable table, int start, int end, int col) {
+    DataBag bag = bagFactory.newDefaultBag();
+    for (int row = start; row < end; row++) {
+      bag.add(tupleFactory.newTuple(table.get(row, col)));
+    }
+    return bag;
+  }
+
+  @Override
+  public Tuple getNext() throws IOException {
+    try {
+      if (!reader.nextKeyValue()) {
+        return null;
+      }
+      IsrMergeJoin join = (IsrMergeJoin) reader.getCurrentValue();
+      ColumnarTable demos = join.getDemos();
+      int row = join.getDemoRow();
+      List<Object> values = Lists.newArrayList();
+      values.add(join.getIsr());
+      values.add(toInt(demos.get(row, DEMO_CASE_ID)));
+      values.add(demos.get(row, DEMO_FDA_DT));
+      values.add(toLong(demos.get(row, DEMO_AGE)));
+      values.add(demos.get(row, DEMO_AGE_CODE));
+      values.add(demos.get(row, DEMO_GENDER));
+      values.add(toBag(join.getDrugs(), join.getDrugRowStart(), join.getDrugRowEnd(),
+          DRUG_NAME));
+      values.add(toBag(join.getReacs(), join.getReacRowStart(), join.getReacRowEnd(),
+          REAC_CODE));
+      return tupleFactory.newTuple(values);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  public ResourceSchema getSchema(String location, Job job) throws IOException {
+    return new ResourceSchema(Utils.getSchemaFromString(SCHEMA));
+  }
+
+  public ResourceStatistics getStatistics(String location, Job job) {
+    return null;
+  }
+
+  public String[] getPartitionKeys(String location, Job job) {
+    return null;
+  }
+
+  public void setPartitionFilter(Expression filter) {
+  }
+}
@@ -19,7 +19,9 @@ import java.io.IOException;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.pig.EvalFunc;
 import org.apache.pig.backend.executionengine.ExecException;
@@ -44,15 +46,35 @@ import com.google.common.collect.Sets;
  * value is a bag of {@link Tuple} values with N-fields, where N is the arity
  * specified in the constructor.
  * 
+ * <p>For higher arities, the number of subsets of a large bag can be enormous,
+ * so an optional second constructor argument sets a budget on the number of
+ * subsets that are generated for each bag. When a bag has more subsets than
+ * the budget, a uniform random sample of the subsets of that size is
+ * returned instead, and each output tuple has an extra field that contains
+ * the inverse of the sampling probability, so that downstream counts can be
+ * reweighted. The sample is seeded by an optional second input field, e.g.,
+ * the ISR of the report, so that reruns select the same subsets. When a budget
+ * is given, the weight field is always present and is 1.0 for bags that were
+ * not sampled.
+ * 
  */
 public class Combinatorial extends EvalFunc<DataBag> {
 
   private final TupleFactory tupleFactory = TupleFactory.getInstance();
   private final BagFactory bagFactory = BagFactory.getInstance();
   private final int arity;
+  private final long budget;
   
   public Combinatorial(String arity) {
+    this(arity, null);
+  }
+  
+  public Combinatorial(String arity, String budget) {
     this.arity = Integer.valueOf(arity);
+    this.budget = budget == null ? -1L : Long.valueOf(budget);
+    if (budget != null && this.budget < 1) {
+      throw new IllegalArgumentException("The budget must be positive: " + budget);
+    }
   }
   
   @Override
@@ -64,19 +86,37 @@ public class Combinatorial extends EvalFunc<DataBag> {
         throw new IOException("Expected input to be a bag, but got: " + o.getClass().getName());
       }
       DataBag inputBag = (DataBag) o;
-      Set<Comparable> uniqs = Sets.newTreeSet();
+      // The values are sorted by their natural ordering, so they must be Comparable.
+      Set<Object> uniqs = new TreeSet<Object>();
       for (Tuple t : inputBag) {
         if (t != null && t.get(0) != null) {
-          uniqs.add((Comparable) t.get(0));
+          uniqs.add(t.get(0));
         }
       }
       if (uniqs.size() < arity) {
         return output;
       }
-      List<Comparable> values = Lists.newArrayList(uniqs);
-      Comparable[] subset = new Comparable[arity];
+      List<Object> values = Lists.newArrayList(uniqs);
+      Object[] subset = new Object[arity];
       
-      process(values, subset, 0, 0, output);
+      if (budget < 0) {
+        process(values, subset, 0, 0, output);
+      } else {
+        long[][] binomial = binomials(values.size(), arity);
+        long total = binomial[values.size()][arity];
+        if (total <= budget) {
+          process(values, subset, 0, 0, output, 1.0);
+        } else {
+          Object seed = input.size() > 1 ? input.get(1) : null;
+          Random random = new Random(seed instanceof Number ? ((Number) seed).longValue() :
+              (seed != null ? seed.hashCode() : values.hashCode()));
+          double weight = total / (double) budget;
+          for (long rank : sampleRanks(total, random)) {
+            unrank(rank, values, binomial, subset);
+            output.add(newTuple(subset, weight));
+          }
+        }
+      }
 
       return output;
     } catch (ExecException e) {
@@ -84,7 +124,7 @@ public class Combinatorial extends EvalFunc<DataBag> {
     }
   }
 
-  private void process(List<Comparable> values, Comparable[] subset, int curSubsetSize, int nextIndex,
+  private void process(List<Object> values, Object[] subset, int curSubsetSize, int nextIndex,
       DataBag output) {
     if (curSubsetSize == subset.length) {
       output.add(tupleFactory.newTuple(Arrays.asList(subset)));
@@ -96,6 +136,75 @@ public class Combinatorial extends EvalFunc<DataBag> {
     }
   }
   
+  private void process(List<Object> values, Object[] subset, int curSubsetSize, int nextIndex,
+      DataBag output, double weight) {
+    if (curSubsetSize == subset.length) {
+      output.add(newTuple(subset, weight));
+    } else {
+      for (int i = nextIndex; i < values.size(); i++) {
+        subset[curSubsetSize] = values.get(i);
+        process(values, subset, curSubsetSize + 1, i + 1, output, weight);
+      }
+    }
+  }
+  
+  private Tuple newTuple(Object[] subset, double weight) {
+    List<Object> fields = Lists.<Object>newArrayList(Arrays.asList(subset));
+    fields.add(weight);
+    return tupleFactory.newTuple(fields);
+  }
+  
+  /**
+   * Returns the table of binomial coefficients C(m, j) for m <= n and j <= k.
+   */
+  private static long[][] binomials(int n, int k) throws ExecException {
+    long[][] c = new long[n + 1][k + 1];
+    for (int m = 0; m <= n; m++) {
+      c[m][0] = 1L;
+      for (int j = 1; j <= Math.min(m, k); j++) {
+        c[m][j] = c[m - 1][j - 1] + c[m - 1][j];
+        if (c[m][j] < 0) {
+          throw new ExecException("Too many subsets of size " + k + " for a bag of size " + n);
+        }
+      }
+    }
+    return c;
+  }
+  
+  /**
+   * Selects a uniform random set of distinct ranks in [0, total) of the
+   * budgeted size using Floyd's algorithm, which only needs to generate as
+   * many random numbers as there are ranks in the sample.
+   */
+  private Set<Long> sampleRanks(long total, Random random) {
+    Set<Long> ranks = Sets.newTreeSet();
+    for (long j = total - budget; j < total; j++) {
+      long r = (long) (random.nextDouble() * (j + 1));
+      if (!ranks.add(r)) {
+        ranks.add(j);
+      }
+    }
+    return ranks;
+  }
+  
+  /**
+   * Fills in the subset with the given rank in the lexicographic ordering of
+   * the subsets of the values.
+   */
+  private static void unrank(long rank, List<Object> values, long[][] binomial,
+      Object[] subset) {
+    int n = values.size();
+    int next = 0;
+    for (int i = 0; i < subset.length; i++) {
+      int remaining = subset.length - i - 1;
+      while (rank >= binomial[n - next - 1][remaining]) {
+        rank -= binomial[n - next - 1][remaining];
+        next++;
+      }
+      subset[i] = values.get(next++);
+    }
+  }
+  
   private boolean isComparable(byte pigType) {
     return DataType.isAtomic(pigType) || pigType == DataType.GENERIC_WRITABLECOMPARABLE;
   }
@@ -109,8 +218,8 @@ public class Combinatorial extends EvalFunc<DataBag> {
    * 	Describe should output: ({name0:chararray, name1:chararray})s
    */
   public Schema outputSchema(Schema input) {
-    if (input.size() != 1) {
-      throw new IllegalArgumentException("Expected a bag; input has > 1 field");
+    if (input.size() != 1 && input.size() != 2) {
+      throw new IllegalArgumentException("Expected a bag and an optional seed; input has > 2 fields");
     }
     try {
     	
@@ -145,6 +254,9 @@ public class Combinatorial extends EvalFunc<DataBag> {
       for (int i = 0; i < arity; i++) {
         fields.add(new FieldSchema(inputName + i, inputField.type));
       }
+      if (budget >= 0) {
+        fields.add(new FieldSchema("weight", DataType.DOUBLE));
+      }
       Schema newTupleSchema = new Schema(fields);
       
       //Define the tuple
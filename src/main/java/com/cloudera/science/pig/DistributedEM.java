@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.PigServer;
+import org.apache.pig.data.Tuple;
+
+import com.cloudera.science.mgps.EMStatistics;
+import com.cloudera.science.mgps.Parameters;
+import com.google.common.base.Charsets;
+
+/**
+ * A driver that fits the MGPS hyperparameters over the full, unsquashed set
+ * of drug-drug-reaction triples from step 2. Each iteration runs a Pig job that
+ * computes the {@link EMStatistics} over all of the triples using the
+ * algebraic {@link EMStep} function, and then performs the M-step locally.
+ * Iteration stops when the log-likelihood changes by less than the given
+ * tolerance. If an update decreases the log-likelihood, the update is retried
+ * with a shorter step from the previous parameters.
+ *
+ * <p>This is much slower per iteration than the R code, but its memory use
+ * does not depend on the size of the data, so it can be used to validate the
+ * fit to the squashed data from step 3 against the exact fit.
+ */
+public class DistributedEM {
+
+  private static final Log LOG = LogFactory.getLog(DistributedEM.class);
+
+  private static final double MIN_STEP_SIZE = 1.0 / 64;
+
+  private final PigServer pig;
+  private final String input;
+  private final int nstar;
+
+  public DistributedEM(PigServer pig, String input, int nstar) throws IOException {
+    this.pig = pig;
+    this.input = input;
+    this.nstar = nstar;
+    String jar = DistributedEM.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+    if (jar.endsWith(".jar")) {
+      pig.registerJar(jar);
+    }
+  }
+
+  /**
+   * Runs the E-step over all of the triples at the given parameters.
+   */
+  public EMStatistics expectation(Parameters params) throws IOException {
+    pig.registerQuery(String.format("DEFINE EMStep %s('%d', '%s', '%s', '%s', '%s', '%s');",
+        EMStep.class.getName(), nstar, params.getAlpha1(), params.getBeta1(),
+        params.getAlpha2(), params.getBeta2(), params.getP()));
+    pig.registerQuery("data = LOAD '" + input + "' USING PigStorage('$') AS (" +
+        "d1: chararray, d2: chararray, reac: chararray, actual: long, expected: double);");
+    pig.registerQuery("filtered = FILTER data BY actual >= " + nstar + ";");
+    pig.registerQuery("grouped = GROUP filtered ALL;");
+    pig.registerQuery("stats = FOREACH grouped GENERATE EMStep(filtered.(actual, expected));");
+
+    Iterator<Tuple> iter = pig.openIterator("stats");
+    if (!iter.hasNext()) {
+      throw new IOException("No triples with at least " + nstar + " observations in " + input);
+    }
+    Tuple t = (Tuple) iter.next().get(0);
+    double[] values = new double[EMStatistics.SIZE];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = ((Number) t.get(i)).doubleValue();
+    }
+    EMStatistics stats = new EMStatistics(params, nstar);
+    stats.merge(values);
+    return stats;
+  }
+
+  /**
+   * Iterates from the given starting parameters until convergence or until the
+   * maximum number of iterations is reached, and returns the evaluated
+   * parameters with the highest log-likelihood.
+   */
+  public Parameters fit(Parameters start, int maxIterations, double tolerance)
+      throws IOException {
+    Parameters params = start;
+    Parameters best = start;
+    double bestLL = Double.NEGATIVE_INFINITY;
+    EMStatistics prev = null;
+    double stepSize = 1.0;
+    for (int i = 0; i < maxIterations; i++) {
+      EMStatistics stats = expectation(params);
+      double ll = stats.getLogLikelihood();
+      LOG.info("Iteration " + i + ": loglik=" + ll + " theta=" + params);
+      // Once the step size bottoms out, a step that lowers the log-likelihood
+      // is accepted, so keep track of the best parameters seen so far.
+      if (ll > bestLL) {
+        best = params;
+        bestLL = ll;
+      }
+      if (prev != null) {
+        double prevLL = prev.getLogLikelihood();
+        if (ll < prevLL && stepSize > MIN_STEP_SIZE) {
+          // The last step overshot, so retry a shorter step from the previous parameters.
+          stepSize /= 2.0;
+          params = prev.maximize(stepSize);
+          continue;
+        }
+        if (Math.abs(ll - prevLL) < tolerance) {
+          break;
+        }
+      }
+      prev = stats;
+      stepSize = 1.0;
+      params = stats.maximize();
+    }
+    return best;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4 || args.length > 7) {
+      System.err.println("Usage: DistributedEM <local|mapreduce> <input> <nstar> " +
+          "<alpha1,beta1,alpha2,beta2,p> [output_file] [max_iterations] [tolerance]");
+      System.exit(1);
+    }
+    PigServer pig = new PigServer(args[0]);
+    DistributedEM em = new DistributedEM(pig, args[1], Integer.valueOf(args[2]));
+    int maxIterations = args.length > 5 ? Integer.valueOf(args[5]) : 100;
+    double tolerance = args.length > 6 ? Double.valueOf(args[6]) : 0.01;
+    Parameters fit = em.fit(Parameters.parse(args[3]), maxIterations, tolerance);
+    pig.shutdown();
+
+    System.out.println(fit);
+    if (args.length > 4) {
+      Writer out = new OutputStreamWriter(new FileOutputStream(new File(args[4])), Charsets.UTF_8);
+      try {
+        out.write(fit + "\n");
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
@@ -16,6 +16,9 @@
 package com.cloudera.science.pig;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.math.ConvergenceException;
 import org.apache.commons.math.FunctionEvaluationException;
@@ -33,6 +36,18 @@ import org.apache.pig.data.Tuple;
 import com.cloudera.science.mgps.NFunction;
 import com.cloudera.science.mgps.QFunction;
 
+/**
+ * A Pig UDF for calculating the lower (or upper) bound of the Empirical Bayes
+ * confidence interval for the multi-item association sets algorithm, i.e., the
+ * value of lambda at which the posterior distribution reaches the given
+ * target percentile.
+ *
+ * <p>Solving for the percentile is expensive, so an optional {@link EBCIGrid}
+ * file that was built for the same parameters may be specified as the final
+ * constructor argument. The grid is shipped to each task via the distributed
+ * cache, and exact solves are only performed for points that are not covered
+ * by the grid.
+ */
 public class EBCI extends EvalFunc<Double> {
 
   private static class PiFunction implements UnivariateRealFunction {
@@ -92,29 +107,78 @@ public class EBCI extends EvalFunc<Double> {
   private final double beta1;
   private final double alpha2;
   private final double beta2;
+  private final double p;
   private final QFunction q;
+  private final String gridFile;
+  private EBCIGrid grid;
   
   public EBCI(String target, String alpha1, String beta1,
       String alpha2, String beta2, String p) {
-    this(Double.valueOf(target), Double.valueOf(alpha1), Double.valueOf(beta1),
-        Double.valueOf(alpha2), Double.valueOf(beta2), Double.valueOf(p));
+    this(target, alpha1, beta1, alpha2, beta2, p, null);
   }
   
-  
-  
+  public EBCI(String target, String alpha1, String beta1,
+      String alpha2, String beta2, String p, String gridFile) {
+    this(Double.valueOf(target), Double.valueOf(alpha1), Double.valueOf(beta1),
+        Double.valueOf(alpha2), Double.valueOf(beta2), Double.valueOf(p), gridFile);
+  }
   
   public EBCI(double target, double alpha1, double beta1,
       double alpha2, double beta2, double p) {
+    this(target, alpha1, beta1, alpha2, beta2, p, null);
+  }
+  
+  private EBCI(double target, double alpha1, double beta1,
+      double alpha2, double beta2, double p, String gridFile) {
     this.target = target;
     this.alpha1 = alpha1;
     this.beta1 = beta1;
     this.alpha2 = alpha2;
     this.beta2 = beta2;
+    this.p = p;
     this.q = new QFunction(new NFunction(alpha1, beta1),
         new NFunction(alpha2, beta2), p);
+    this.gridFile = gridFile;
+  }
+  
+  /**
+   * Returns the (target, alpha1, beta1, alpha2, beta2, p) values for this
+   * instance.
+   */
+  public double[] getParameters() {
+    return new double[] { target, alpha1, beta1, alpha2, beta2, p };
+  }
+  
+  /**
+   * Sets the grid of precomputed values to use before falling back to the
+   * exact solver.
+   */
+  public void setGrid(EBCIGrid grid) {
+    if (grid != null && !grid.matches(getParameters())) {
+      throw new IllegalArgumentException("The EBCI grid was built for different parameters");
+    }
+    this.grid = grid;
+  }
+  
+  @Override
+  public List<String> getCacheFiles() {
+    if (gridFile == null) {
+      return null;
+    }
+    return Collections.singletonList(CacheFiles.toCacheSpec(gridFile));
   }
   
   public double eval(int n, double e) {
+    if (grid != null) {
+      double v = grid.lookup(n, e);
+      if (!Double.isNaN(v)) {
+        return v;
+      }
+    }
+    return solve(n, e);
+  }
+  
+  private double solve(int n, double e) {
     GammaDistribution g1 = new GammaDistributionImpl(alpha1 + n, beta1 + e);
     GammaDistribution g2 = new GammaDistributionImpl(alpha2 + n, beta2 + e);
     PiFunction pi = new PiFunction(q.eval(n, e), g1, g2);
@@ -139,6 +203,14 @@ public class EBCI extends EvalFunc<Double> {
   
   @Override
   public Double exec(Tuple input) throws IOException {
+    if (gridFile != null && grid == null) {
+      InputStream in = CacheFiles.open(gridFile);
+      try {
+        setGrid(EBCIGrid.read(in));
+      } finally {
+        in.close();
+      }
+    }
     int n = ((Number) input.get(0)).intValue();
     double e = ((Number) input.get(1)).doubleValue();
     return eval(n, e);
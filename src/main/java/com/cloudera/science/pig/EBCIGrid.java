@@ -0,0 +1,251 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A precomputed table of {@link EBCI} values for a single set of
+ * hyperparameters, keyed by the integer actual count n and a log-spaced axis
+ * of expected counts e.
+ *
+ * <p>Lookups interpolate linearly between the two neighboring grid points in
+ * (log e, log EBCI) space, which preserves the monotonicity of the EBCI in e
+ * between grid points. When the grid is built, the exact EBCI is also
+ * evaluated at the midpoint of every grid interval, and the largest absolute
+ * difference between the exact and interpolated values is recorded as the
+ * grid's error bound. Lookups for points that are off the grid return
+ * {@code NaN}, so that the caller can fall back to solving for the exact value.
+ *
+ * <p>Grids are built once per parameter set using the {@link #main} method and
+ * may be shipped to Pig tasks via the distributed cache by passing the path of
+ * the grid file to the {@link EBCI} constructor.
+ */
+public class EBCIGrid {
+
+  private static final int MAGIC = 0x45424349; // "EBCI"
+  private static final int VERSION = 1;
+
+  /** The default range of the grid, which is used by {@link #build(EBCI)}. */
+  public static final int DEFAULT_MIN_N = 1;
+  public static final int DEFAULT_MAX_N = 50;
+  public static final double DEFAULT_E_MIN = 1.0e-3;
+  public static final double DEFAULT_E_MAX = 1.0e3;
+  public static final int DEFAULT_POINTS_PER_DECADE = 20;
+
+  private final double[] params;
+  private final int minN;
+  private final int maxN;
+  private final double logEMin;
+  private final int pointsPerDecade;
+  private final double[][] logValues;
+  private final double maxError;
+
+  private EBCIGrid(double[] params, int minN, int maxN, double logEMin, int pointsPerDecade,
+      double[][] logValues, double maxError) {
+    this.params = params;
+    this.minN = minN;
+    this.maxN = maxN;
+    this.logEMin = logEMin;
+    this.pointsPerDecade = pointsPerDecade;
+    this.logValues = logValues;
+    this.maxError = maxError;
+  }
+
+  /**
+   * Builds a grid for all of the values of n in [minN, maxN] and a set of
+   * expected counts that runs from eMin to eMax with the given number of points
+   * per decade. The minimum n should usually match the minimum support that is
+   * used to filter the triples before they are scored. The grid must have at
+   * least two expected counts, i.e., eMax must be greater than eMin, so that
+   * lookups can interpolate between them.
+   */
+  public static EBCIGrid build(EBCI ebci, int minN, int maxN, double eMin, double eMax,
+      int pointsPerDecade) {
+    if (maxN < minN || !(eMin > 0.0 && eMax > eMin) || pointsPerDecade < 1) {
+      throw new IllegalArgumentException("Expected minN <= maxN, 0 < eMin < eMax, and " +
+          "pointsPerDecade >= 1, but got " + minN + ", " + maxN + ", " + eMin + ", " + eMax +
+          ", " + pointsPerDecade);
+    }
+    double logEMin = Math.log10(eMin);
+    int numE = 1 + (int) Math.ceil((Math.log10(eMax) - logEMin) * pointsPerDecade);
+    return build(ebci, minN, maxN, logEMin, numE, pointsPerDecade);
+  }
+
+  /**
+   * Builds a grid over the default range of n and e.
+   */
+  public static EBCIGrid build(EBCI ebci) {
+    return build(ebci, DEFAULT_MIN_N, DEFAULT_MAX_N, DEFAULT_E_MIN, DEFAULT_E_MAX,
+        DEFAULT_POINTS_PER_DECADE);
+  }
+
+  /**
+   * Builds a grid over the same values of n and e as this one for a different
+   * EBCI, e.g., when the hyperparameters have been refit.
+   */
+  public EBCIGrid rebuild(EBCI ebci) {
+    return build(ebci, minN, maxN, logEMin, logValues[0].length, pointsPerDecade);
+  }
+
+  private static EBCIGrid build(EBCI ebci, int minN, int maxN, double logEMin, int numE,
+      int pointsPerDecade) {
+    double[][] logValues = new double[maxN - minN + 1][numE];
+    for (int n = minN; n <= maxN; n++) {
+      for (int i = 0; i < numE; i++) {
+        double e = Math.pow(10.0, logEMin + i / (double) pointsPerDecade);
+        logValues[n - minN][i] = safeLog(ebci.eval(n, e));
+      }
+    }
+    EBCIGrid grid = new EBCIGrid(ebci.getParameters(), minN, maxN, logEMin, pointsPerDecade,
+        logValues, 0.0);
+
+    double maxError = 0.0;
+    for (int n = minN; n <= maxN; n++) {
+      for (int i = 0; i < numE - 1; i++) {
+        double e = Math.pow(10.0, logEMin + (i + 0.5) / pointsPerDecade);
+        double approx = grid.lookup(n, e);
+        double exact = ebci.eval(n, e);
+        if (!Double.isNaN(approx) && exact > 0.0) {
+          maxError = Math.max(maxError, Math.abs(approx - exact));
+        }
+      }
+    }
+    return new EBCIGrid(grid.params, minN, maxN, logEMin, pointsPerDecade, logValues,
+        maxError);
+  }
+
+  private static double safeLog(double value) {
+    return value > 0.0 ? Math.log(value) : Double.NaN;
+  }
+
+  /**
+   * Returns the interpolated EBCI value for (n, e), or {@code NaN} if the point
+   * is not covered by the grid.
+   */
+  public double lookup(int n, double e) {
+    if (n < minN || n > maxN || !(e > 0.0)) {
+      return Double.NaN;
+    }
+    double[] row = logValues[n - minN];
+    double x = (Math.log10(e) - logEMin) * pointsPerDecade;
+    if (!(x >= 0.0 && x <= row.length - 1)) {
+      return Double.NaN;
+    }
+    int i = Math.min((int) x, row.length - 2);
+    double t = x - i;
+    // NaN cells, where the exact solve failed, propagate to the result.
+    return Math.exp((1.0 - t) * row[i] + t * row[i + 1]);
+  }
+
+  /**
+   * The largest absolute error between the interpolated and exact values
+   * observed at the interval midpoints when the grid was built.
+   */
+  public double getMaxError() {
+    return maxError;
+  }
+
+  /**
+   * Returns true if this grid was built for the given EBCI target and
+   * (alpha1, beta1, alpha2, beta2, p) parameters.
+   */
+  public boolean matches(double[] ebciParams) {
+    return Arrays.equals(params, ebciParams);
+  }
+
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+    dos.writeInt(MAGIC);
+    dos.writeInt(VERSION);
+    dos.writeInt(params.length);
+    for (double p : params) {
+      dos.writeDouble(p);
+    }
+    dos.writeInt(minN);
+    dos.writeInt(maxN);
+    dos.writeDouble(logEMin);
+    dos.writeInt(pointsPerDecade);
+    dos.writeInt(logValues[0].length);
+    dos.writeDouble(maxError);
+    for (double[] row : logValues) {
+      for (double v : row) {
+        dos.writeDouble(v);
+      }
+    }
+    dos.flush();
+  }
+
+  public static EBCIGrid read(InputStream in) throws IOException {
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+    if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+      throw new IOException("Not a version " + VERSION + " EBCI grid file");
+    }
+    double[] params = new double[dis.readInt()];
+    for (int i = 0; i < params.length; i++) {
+      params[i] = dis.readDouble();
+    }
+    int minN = dis.readInt();
+    int maxN = dis.readInt();
+    double logEMin = dis.readDouble();
+    int pointsPerDecade = dis.readInt();
+    int numE = dis.readInt();
+    if (maxN < minN || numE < 2 || pointsPerDecade < 1) {
+      throw new IOException("Invalid EBCI grid with " + (maxN - minN + 1) + " rows and " +
+          numE + " columns");
+    }
+    double maxError = dis.readDouble();
+    double[][] logValues = new double[maxN - minN + 1][numE];
+    for (double[] row : logValues) {
+      for (int i = 0; i < numE; i++) {
+        row[i] = dis.readDouble();
+      }
+    }
+    return new EBCIGrid(params, minN, maxN, logEMin, pointsPerDecade, logValues, maxError);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 7 && args.length != 12) {
+      System.err.println("Usage: EBCIGrid <output> <target> <alpha1> <beta1> <alpha2> <beta2> <p>" +
+          " [minN maxN eMin eMax pointsPerDecade]");
+      System.exit(1);
+    }
+    EBCI ebci = new EBCI(args[1], args[2], args[3], args[4], args[5], args[6]);
+    int minN = args.length > 7 ? Integer.valueOf(args[7]) : DEFAULT_MIN_N;
+    int maxN = args.length > 7 ? Integer.valueOf(args[8]) : DEFAULT_MAX_N;
+    double eMin = args.length > 7 ? Double.valueOf(args[9]) : DEFAULT_E_MIN;
+    double eMax = args.length > 7 ? Double.valueOf(args[10]) : DEFAULT_E_MAX;
+    int pointsPerDecade = args.length > 7 ? Integer.valueOf(args[11]) :
+        DEFAULT_POINTS_PER_DECADE;
+    EBCIGrid grid = build(ebci, minN, maxN, eMin, eMax, pointsPerDecade);
+    OutputStream out = new FileOutputStream(args[0]);
+    try {
+      grid.write(out);
+    } finally {
+      out.close();
+    }
+    System.out.println("Wrote grid for " + minN + " <= n <= " + maxN + ", " + eMin +
+        " <= e <= " + eMax + " with a maximum interpolation error of " + grid.getMaxError());
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.IOException;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.Tuple;
+
+/**
+ * A Pig UDF that estimates the standard error of the {@link EBGM} score that
+ * is due to sampling the ISRs with {@link SampleIsr}. The first constructor
+ * argument is the sample rate r, and the rest are the same as the arguments
+ * to {@code EBGM}.
+ *
+ * <p>An actual count of N that is estimated from a Bernoulli sample of the
+ * ISRs has a standard deviation of sqrt(N (1 - r) / r), which is propagated
+ * to the EBGM score with a central difference around N. Since EBGM is only
+ * defined for integer counts, the difference is taken between the integers
+ * that bracket N plus and minus one standard deviation, and then rescaled.
+ * The sampling error in the expected count, which is computed from much
+ * larger marginal counts, is ignored.
+ */
+public class EBGMStdErr extends EvalFunc<Double> {
+
+  private final double rate;
+  private final EBGM ebgm;
+
+  public EBGMStdErr(String rate, String alpha1, String beta1, String alpha2, String beta2,
+      String p) {
+    this(Double.valueOf(rate), Double.valueOf(alpha1), Double.valueOf(beta1),
+        Double.valueOf(alpha2), Double.valueOf(beta2), Double.valueOf(p));
+  }
+
+  public EBGMStdErr(double rate, double alpha1, double beta1, double alpha2, double beta2,
+      double p) {
+    if (!(rate > 0.0 && rate <= 1.0)) {
+      throw new IllegalArgumentException("Sample rate must be in (0, 1]: " + rate);
+    }
+    this.rate = rate;
+    this.ebgm = new EBGM(alpha1, beta1, alpha2, beta2, p);
+  }
+
+  public double eval(int n, double e) {
+    double sd = Math.sqrt(n * (1.0 - rate) / rate);
+    if (sd == 0.0) {
+      return 0.0;
+    }
+    int lo = (int) Math.max(0, Math.floor(n - sd));
+    int hi = (int) Math.ceil(n + sd);
+    return sd * (ebgm.eval(hi, e) - ebgm.eval(lo, e)) / (hi - lo);
+  }
+
+  @Override
+  public Double exec(Tuple input) throws IOException {
+    int n = ((Number) input.get(0)).intValue();
+    double e = ((Number) input.get(1)).doubleValue();
+    return eval(n, e);
+  }
+}
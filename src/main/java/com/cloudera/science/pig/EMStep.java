@@ -0,0 +1,172 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
+
+import com.cloudera.science.mgps.EMStatistics;
+import com.cloudera.science.mgps.Parameters;
+import com.google.common.collect.Lists;
+
+/**
+ * An algebraic Pig UDF that computes the {@link EMStatistics} for one
+ * iteration of fitting the MGPS hyperparameters over a bag of
+ * (actual, expected) or (actual, expected, weight) tuples. The constructor
+ * arguments are the minimum actual count in the data, followed by the current
+ * (alpha1, beta1, alpha2, beta2, p) parameters.
+ *
+ * <p>The output is a tuple of {@link EMStatistics#SIZE} doubles. Since the
+ * statistics are sums, Pig computes them in the combiner, and the full set of
+ * triples never has to be brought to a single machine. The
+ * {@link DistributedEM} driver runs this function once per iteration and
+ * performs the M-step on the result.
+ */
+public class EMStep extends EvalFunc<Tuple> implements Algebraic {
+
+  private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+
+  private final String[] args;
+
+  public EMStep(String nstar, String alpha1, String beta1, String alpha2, String beta2,
+      String p) {
+    this.args = new String[] { nstar, alpha1, beta1, alpha2, beta2, p };
+  }
+
+  private static EMStatistics create(String[] args) {
+    return new EMStatistics(
+        new Parameters(Double.valueOf(args[1]), Double.valueOf(args[2]),
+            Double.valueOf(args[3]), Double.valueOf(args[4]), Double.valueOf(args[5])),
+        Integer.valueOf(args[0]));
+  }
+
+  private static void addAll(EMStatistics stats, DataBag bag) throws IOException {
+    for (Tuple t : bag) {
+      if (t != null && t.get(0) != null && t.get(1) != null) {
+        double weight = t.size() > 2 && t.get(2) != null ?
+            ((Number) t.get(2)).doubleValue() : 1.0;
+        stats.add(((Number) t.get(0)).intValue(), ((Number) t.get(1)).doubleValue(), weight);
+      }
+    }
+  }
+
+  private static void mergeAll(EMStatistics stats, DataBag bag) throws IOException {
+    double[] values = new double[EMStatistics.SIZE];
+    for (Tuple t : bag) {
+      for (int i = 0; i < EMStatistics.SIZE; i++) {
+        values[i] = ((Number) t.get(i)).doubleValue();
+      }
+      stats.merge(values);
+    }
+  }
+
+  private static Tuple toTuple(EMStatistics stats) {
+    List<Object> values = Lists.newArrayList();
+    for (double v : stats.toArray()) {
+      values.add(v);
+    }
+    return tupleFactory.newTuple(values);
+  }
+
+  @Override
+  public Tuple exec(Tuple input) throws IOException {
+    EMStatistics stats = create(args);
+    addAll(stats, (DataBag) input.get(0));
+    return toTuple(stats);
+  }
+
+  public String getInitial() {
+    return Initial.class.getName();
+  }
+
+  public String getIntermed() {
+    return Intermediate.class.getName();
+  }
+
+  public String getFinal() {
+    return Final.class.getName();
+  }
+
+  public static class Initial extends EvalFunc<Tuple> {
+    private final String[] args;
+
+    public Initial(String nstar, String alpha1, String beta1, String alpha2, String beta2,
+        String p) {
+      this.args = new String[] { nstar, alpha1, beta1, alpha2, beta2, p };
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+      EMStatistics stats = create(args);
+      addAll(stats, (DataBag) input.get(0));
+      return toTuple(stats);
+    }
+  }
+
+  public static class Intermediate extends EvalFunc<Tuple> {
+    private final String[] args;
+
+    public Intermediate(String nstar, String alpha1, String beta1, String alpha2,
+        String beta2, String p) {
+      this.args = new String[] { nstar, alpha1, beta1, alpha2, beta2, p };
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+      EMStatistics stats = create(args);
+      mergeAll(stats, (DataBag) input.get(0));
+      return toTuple(stats);
+    }
+  }
+
+  public static class Final extends EvalFunc<Tuple> {
+    private final String[] args;
+
+    public Final(String nstar, String alpha1, String beta1, String alpha2, String beta2,
+        String p) {
+      this.args = new String[] { nstar, alpha1, beta1, alpha2, beta2, p };
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+      EMStatistics stats = create(args);
+      mergeAll(stats, (DataBag) input.get(0));
+      return toTuple(stats);
+    }
+  }
+
+  @Override
+  public Schema outputSchema(Schema input) {
+    List<FieldSchema> fields = Lists.newArrayList();
+    for (int i = 0; i < EMStatistics.SIZE; i++) {
+      fields.add(new FieldSchema("s" + i, DataType.DOUBLE));
+    }
+    try {
+      return new Schema(new FieldSchema("em_stats", new Schema(fields), DataType.TUPLE));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
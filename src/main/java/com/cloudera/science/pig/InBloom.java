@@ -0,0 +1,61 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.pig.FilterFunc;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+
+/**
+ * A Pig filter function that keeps the records whose numeric key may be in a
+ * Bloom filter that was built by {@link BuildBloom}. The first argument is the
+ * key, and the second is the filter, which is usually a scalar reference to
+ * the single record of a relation that was built with {@code GROUP ... ALL},
+ * e.g., {@code InBloom(isr, selected_bloom.bloom)}. Pig writes the scalar out
+ * and ships it to the tasks, and the filter is only deserialized once per task.
+ *
+ * <p>Since Bloom filters have no false negatives, this can be used to prune
+ * both sides of a join before the shuffle without changing its result.
+ */
+public class InBloom extends FilterFunc {
+
+  private BloomFilter filter;
+
+  void setFilter(BloomFilter filter) {
+    this.filter = filter;
+  }
+
+  @Override
+  public Boolean exec(Tuple input) throws IOException {
+    if (filter == null) {
+      Object bytes = input.get(1);
+      if (!(bytes instanceof DataByteArray)) {
+        throw new IOException("Expected the second input to be a Bloom filter, but got: " +
+            bytes);
+      }
+      setFilter(BuildBloom.read(new ByteArrayInputStream(((DataByteArray) bytes).get())));
+    }
+    Object key = input.get(0);
+    if (key == null) {
+      return false;
+    }
+    return filter.membershipTest(BuildBloom.toKey(((Number) key).longValue()));
+  }
+}
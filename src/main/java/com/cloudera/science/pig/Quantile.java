@@ -34,7 +34,9 @@ import com.google.common.collect.Lists;
 
 /**
  * A Pig UDF for computing quantiles from a {@link DataBag} of numeric values.
- * It returns a {@code DataBag} of {@link Tuple} values with two fields:
+ * The tuples in the bag may have a second, integral field that contains the
+ * number of times the value was observed, so that duplicate values may be
+ * aggregated before they are passed to this function. It returns a {@code DataBag} of {@link Tuple} values with two fields:
  * a zero-indexed integer that represents the quantile and a double value
  * that is actual quantile estimate.
  * 
@@ -70,7 +72,12 @@ public class Quantile extends EvalFunc<DataBag> {
     
     for (Tuple t : inputBag) {
       if (t != null && t.get(0) != null) {
-        estimator.add(((Number) t.get(0)).doubleValue());
+        double value = ((Number) t.get(0)).doubleValue();
+        if (t.size() > 1 && t.get(1) != null) {
+          estimator.add(value, ((Number) t.get(1)).longValue());
+        } else {
+          estimator.add(value);
+        }
       }
     }
     
@@ -96,16 +103,22 @@ public class Quantile extends EvalFunc<DataBag> {
         throw new IllegalArgumentException("Expected a bag; found: " +
             DataType.findTypeName(input.getField(0).type));
       }
-      if (input.getField(0).schema.size() != 1) {
-        throw new IllegalArgumentException("The bag must contain a single field");
+      Schema bagSchema = input.getField(0).schema;
+      if (bagSchema.size() == 1 && bagSchema.getField(0).type == DataType.TUPLE) {
+        bagSchema = bagSchema.getField(0).schema;
       }
-      byte bagType = input.getField(0).schema.getField(0).type;
-      if (bagType == DataType.TUPLE) {
-        bagType = input.getField(0).schema.getField(0).schema.getField(0).type;
+      if (bagSchema.size() != 1 && bagSchema.size() != 2) {
+        throw new IllegalArgumentException("The bag must contain a value and an optional weight");
       }
-      if (!isNumeric(bagType)) {
+      if (!isNumeric(bagSchema.getField(0).type)) {
         throw new IllegalArgumentException("The bag's field must be a numeric type");
       }
+      if (bagSchema.size() == 2) {
+        byte weightType = bagSchema.getField(1).type;
+        if (weightType != DataType.INTEGER && weightType != DataType.LONG) {
+          throw new IllegalArgumentException("The bag's weight field must be an integral type");
+        }
+      }
       
       List<FieldSchema> fields = Lists.newArrayList(new FieldSchema("quantile", DataType.INTEGER),
           new FieldSchema("value", DataType.DOUBLE));
@@ -114,9 +127,9 @@ public class Quantile extends EvalFunc<DataBag> {
       FieldSchema tupleFieldSchema = new FieldSchema("t", tupleSchema,
           DataType.TUPLE);
       
-      Schema bagSchema = new Schema(tupleFieldSchema);
-      bagSchema.setTwoLevelAccessRequired(true);
-      FieldSchema bagFieldSchema = new FieldSchema("b", bagSchema, DataType.BAG);
+      Schema outputBagSchema = new Schema(tupleFieldSchema);
+      outputBagSchema.setTwoLevelAccessRequired(true);
+      FieldSchema bagFieldSchema = new FieldSchema("b", outputBagSchema, DataType.BAG);
       return new Schema(bagFieldSchema);
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.IOException;
+
+import org.apache.pig.FilterFunc;
+import org.apache.pig.data.Tuple;
+
+/**
+ * A Pig filter function that keeps a deterministic sample of ISRs at the rate
+ * given by its constructor argument, for fast, approximate runs of the
+ * pipeline. Each ISR is kept if a hash of its value falls below the rate, so
+ * the same ISRs are selected by every task and every run, and the sample of
+ * each stratum is an independent Bernoulli sample at the same rate. Counts of
+ * distinct ISRs in the sample may be divided by the rate to estimate the
+ * counts over all of the ISRs.
+ */
+public class SampleIsr extends FilterFunc {
+
+  private final double rate;
+
+  public SampleIsr(String rate) {
+    this(Double.valueOf(rate));
+  }
+
+  public SampleIsr(double rate) {
+    if (!(rate > 0.0 && rate <= 1.0)) {
+      throw new IllegalArgumentException("Sample rate must be in (0, 1]: " + rate);
+    }
+    this.rate = rate;
+  }
+
+  /**
+   * Maps the ISR to a uniformly distributed value in [0, 1), using the
+   * finalizer from the MurmurHash3 64-bit hash function.
+   */
+  static double hash(long isr) {
+    long h = isr;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (h >>> 11) * 0x1.0p-53;
+  }
+
+  public boolean keep(long isr) {
+    return rate >= 1.0 || hash(isr) < rate;
+  }
+
+  @Override
+  public Boolean exec(Tuple input) throws IOException {
+    Object isr = input.get(0);
+    if (isr == null) {
+      return false;
+    }
+    return keep(((Number) isr).longValue());
+  }
+}
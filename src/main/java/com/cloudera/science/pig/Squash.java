@@ -0,0 +1,184 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
+
+import com.cloudera.science.mgps.NFunction;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A Pig UDF that squashes the expected counts that share a single actual
+ * count into a small number of weighted bins, as an adaptive alternative to
+ * binning by the {@link Quantile} and {@link Bin} functions.
+ *
+ * <p>The first argument is the actual count and the second is a
+ * {@link DataBag} of the expected counts. The expected counts are sorted and
+ * swept into contiguous bins, and each bin is extended for as long as the
+ * MGPS log-likelihood of its points, evaluated at a reference set of
+ * (alpha1, beta1, alpha2, beta2, p) parameters, stays within the given
+ * tolerance of the log-likelihood of the same number of points located at the
+ * bin's mean. This places many narrow bins where the likelihood is sensitive
+ * to the expected count, and a few wide bins where it is not.
+ *
+ * <p>The output is a bag of (bin, expected, weight) tuples, where the bins are
+ * numbered from 1 in order of increasing expected counts, expected is
+ * the sum of the expected counts in the bin and weight is the number of
+ * values in it, which is the same layout as the stats computed in step 3.
+ */
+public class Squash extends EvalFunc<DataBag> {
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+  private final BagFactory bagFactory = BagFactory.getInstance();
+  private final double tolerance;
+  private final NFunction n1;
+  private final NFunction n2;
+  private final double logP;
+  private final double logQ;
+
+  public Squash(String tolerance, String alpha1, String beta1, String alpha2,
+      String beta2, String p) {
+    this(Double.valueOf(tolerance), Double.valueOf(alpha1), Double.valueOf(beta1),
+        Double.valueOf(alpha2), Double.valueOf(beta2), Double.valueOf(p));
+  }
+
+  public Squash(double tolerance, double alpha1, double beta1, double alpha2,
+      double beta2, double p) {
+    this.tolerance = tolerance;
+    this.n1 = new NFunction(alpha1, beta1);
+    this.n2 = new NFunction(alpha2, beta2);
+    this.logP = Math.log(p);
+    this.logQ = Math.log(1.0 - p);
+  }
+
+  /**
+   * The log-likelihood of observing the actual count n given the expected
+   * count e under the reference parameters.
+   */
+  private double logLikelihood(int n, double e) {
+    double a = logP + n1.logEval(n, e);
+    double b = logQ + n2.logEval(n, e);
+    double max = Math.max(a, b);
+    if (max == Double.NEGATIVE_INFINITY) {
+      return max;
+    }
+    return max + Math.log(Math.exp(a - max) + Math.exp(b - max));
+  }
+
+  /**
+   * Returns the exclusive end indices of the bins for the given sorted
+   * expected counts.
+   */
+  List<Integer> squash(int n, double[] values) {
+    List<Integer> ends = Lists.newArrayList();
+    int start = 0;
+    double sum = 0.0, ll = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      double pointLL = logLikelihood(n, values[i]);
+      if (i > start) {
+        int weight = i - start + 1;
+        double squashedLL = weight * logLikelihood(n, (sum + values[i]) / weight);
+        if (Math.abs(ll + pointLL - squashedLL) > tolerance) {
+          ends.add(i);
+          start = i;
+          sum = 0.0;
+          ll = 0.0;
+        }
+      }
+      sum += values[i];
+      ll += pointLL;
+    }
+    if (values.length > 0) {
+      ends.add(values.length);
+    }
+    return ends;
+  }
+
+  @Override
+  public DataBag exec(Tuple input) throws IOException {
+    DataBag output = bagFactory.newDefaultBag();
+    Object o1 = input.get(0);
+    if (!(o1 instanceof Number)) {
+      throw new IOException("Expected first input to be a number, but got: " + o1);
+    }
+    int n = ((Number) o1).intValue();
+    Object o2 = input.get(1);
+    if (!(o2 instanceof DataBag)) {
+      throw new IOException("Expected second input to be a bag, but got: " + o2);
+    }
+    DataBag inputBag = (DataBag) o2;
+    double[] values = new double[(int) inputBag.size()];
+    int count = 0;
+    for (Tuple t : inputBag) {
+      if (t != null && t.get(0) != null) {
+        values[count++] = ((Number) t.get(0)).doubleValue();
+      }
+    }
+    values = Arrays.copyOf(values, count);
+    Arrays.sort(values);
+
+    // The bins are numbered from 1, like the bins from Bin, since the R code
+    // that fits the model drops bin 0.
+    int start = 0, bin = 1;
+    for (int end : squash(n, values)) {
+      double sum = 0.0;
+      for (int i = start; i < end; i++) {
+        sum += values[i];
+      }
+      output.add(tupleFactory.newTuple(ImmutableList.of(bin++, sum, (long) (end - start))));
+      start = end;
+    }
+    return output;
+  }
+
+  @Override
+  public Schema outputSchema(Schema input) {
+    if (input.size() != 2) {
+      throw new IllegalArgumentException("Expected a number and a bag; input has != 2 fields");
+    }
+    try {
+      if (input.getField(1).type != DataType.BAG) {
+        throw new IllegalArgumentException("Expected a bag; found: " +
+            DataType.findTypeName(input.getField(1).type));
+      }
+      List<FieldSchema> fields = Lists.newArrayList(new FieldSchema("bin", DataType.INTEGER),
+          new FieldSchema("expected", DataType.DOUBLE),
+          new FieldSchema("weight", DataType.LONG));
+      Schema tupleSchema = new Schema(fields);
+
+      FieldSchema tupleFieldSchema = new FieldSchema("t", tupleSchema,
+          DataType.TUPLE);
+
+      Schema bagSchema = new Schema(tupleFieldSchema);
+      FieldSchema bagFieldSchema = new FieldSchema("b", bagSchema, DataType.BAG);
+      return new Schema(bagFieldSchema);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
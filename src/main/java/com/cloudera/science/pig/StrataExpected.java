@@ -0,0 +1,189 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.io.FileLocalizer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A Pig UDF that computes the expected count of a drug-drug-reaction triple
+ * from the per-strata counts written by step 1, without joining each triple
+ * to the counts for every stratum it appears in. The constructor arguments are
+ * the paths of the strat_demo_counts, strat_drugs_counts, and
+ * strat_reacs_counts outputs, which are read in full by each task.
+ *
+ * <p>The strata are numbered densely in the order that they appear in the
+ * demographics counts, and the counts for each drug are stored in a vector
+ * that is indexed by stratum, as are the counts for each reaction, which are
+ * divided by the square of the stratum's total. The expected count of a
+ * triple is then the dot product sum(d1[s] * d2[s] * reac[s] / total[s]^2).
+ * Unlike step 2, which only sums over the strata in which the triple was
+ * observed, this sums over all of the strata, as in DuMouchel and Pregibon.
+ *
+ * <p>Each task holds (number of drugs + number of reactions) x (number of
+ * strata) counts in memory, so this is meant for use with the coarser strata
+ * that are set by the AGE_BAND and TIME_GRANULARITY parameters of step 1.
+ */
+public class StrataExpected extends EvalFunc<Double> {
+
+  private final String demoCounts;
+  private final String drugCounts;
+  private final String reacCounts;
+
+  private Map<String, Integer> strata;
+  private long[] totals;
+  private Map<String, int[]> drugs;
+  private Map<String, double[]> reacs;
+
+  public StrataExpected(String demoCounts, String drugCounts, String reacCounts) {
+    this.demoCounts = demoCounts;
+    this.drugCounts = drugCounts;
+    this.reacCounts = reacCounts;
+  }
+
+  private static String[] split(String line, int numFields) throws IOException {
+    String[] fields = line.split("\\$", -1);
+    if (fields.length != numFields) {
+      throw new IOException("Expected " + numFields + " fields, but got: " + line);
+    }
+    return fields;
+  }
+
+  private static String stratum(String[] fields) {
+    return fields[0] + "$" + fields[1] + "$" + fields[2];
+  }
+
+  private static BufferedReader reader(InputStream in) {
+    return new BufferedReader(new InputStreamReader(in, Charsets.UTF_8));
+  }
+
+  /**
+   * Reads the counts of each drug or reaction in each stratum into a map from
+   * the name of the drug or reaction to its vector of counts.
+   */
+  private Map<String, int[]> readVectors(InputStream in) throws IOException {
+    Map<String, int[]> vectors = Maps.newHashMap();
+    BufferedReader reader = reader(in);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] fields = split(line, 5);
+      Integer id = strata.get(stratum(fields));
+      if (id == null) {
+        throw new IOException("Unknown stratum: " + line);
+      }
+      int[] vector = vectors.get(fields[3]);
+      if (vector == null) {
+        vector = new int[totals.length];
+        vectors.put(fields[3], vector);
+      }
+      vector[id] += Integer.valueOf(fields[4]);
+    }
+    return vectors;
+  }
+
+  void load(InputStream demoIn, InputStream drugIn, InputStream reacIn) throws IOException {
+    this.strata = Maps.newHashMap();
+    List<Long> counts = Lists.newArrayList();
+    BufferedReader reader = reader(demoIn);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] fields = split(line, 4);
+      String key = stratum(fields);
+      if (strata.containsKey(key)) {
+        throw new IOException("Duplicate stratum: " + line);
+      }
+      strata.put(key, counts.size());
+      counts.add(Long.valueOf(fields[3]));
+    }
+    this.totals = new long[counts.size()];
+    for (int s = 0; s < totals.length; s++) {
+      totals[s] = counts.get(s);
+    }
+
+    this.drugs = readVectors(drugIn);
+    this.reacs = Maps.newHashMap();
+    for (Map.Entry<String, int[]> e : readVectors(reacIn).entrySet()) {
+      int[] reac = e.getValue();
+      double[] weights = new double[reac.length];
+      for (int s = 0; s < reac.length; s++) {
+        if (reac[s] > 0) {
+          weights[s] = reac[s] / ((double) totals[s] * totals[s]);
+        }
+      }
+      reacs.put(e.getKey(), weights);
+    }
+  }
+
+  /**
+   * Returns the number of strata, or -1 if the counts have not been loaded.
+   */
+  public int getNumStrata() {
+    return totals == null ? -1 : totals.length;
+  }
+
+  /**
+   * Returns the expected count of the given triple, or null if one of the
+   * drugs or the reaction does not appear in any stratum.
+   */
+  public Double expected(String d1, String d2, String reac) {
+    int[] x = drugs.get(d1);
+    int[] y = drugs.get(d2);
+    double[] r = reacs.get(reac);
+    if (x == null || y == null || r == null) {
+      return null;
+    }
+    double sum = 0.0;
+    for (int s = 0; s < r.length; s++) {
+      sum += x[s] * (double) y[s] * r[s];
+    }
+    return sum;
+  }
+
+  @Override
+  public Double exec(Tuple input) throws IOException {
+    if (drugs == null) {
+      InputStream demoIn = FileLocalizer.openDFSFile(demoCounts);
+      try {
+        InputStream drugIn = FileLocalizer.openDFSFile(drugCounts);
+        try {
+          InputStream reacIn = FileLocalizer.openDFSFile(reacCounts);
+          try {
+            load(demoIn, drugIn, reacIn);
+          } finally {
+            reacIn.close();
+          }
+        } finally {
+          drugIn.close();
+        }
+      } finally {
+        demoIn.close();
+      }
+    }
+    return expected((String) input.get(0), (String) input.get(1), (String) input.get(2));
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.PigWarning;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A Pig UDF that maps a patient's gender, age, and report date to the
+ * (gender, age_bucket, time_bucket) strata that are used to compute the
+ * expected counts.
+ *
+ * <p>The first constructor argument is the width of the age bands in years,
+ * and the age bucket is the lower bound of the band that contains the age.
+ * The second argument is the granularity of the time buckets, which is one of
+ * "year" (e.g., 2008), "quarter" (2008Q3), "month" (200807), or "day", which
+ * keeps the full yyyymmdd date. Coarser strata mean fewer, larger groups and
+ * join keys in steps 1 and 2, at the cost of less precise adjustment for
+ * confounding by age and time.
+ *
+ * <p>Negative ages get a null age bucket, and dates that do not start with a
+ * valid yyyymm get a null time bucket.
+ */
+public class Stratify extends EvalFunc<Tuple> {
+
+  private static enum Granularity { YEAR, QUARTER, MONTH, DAY }
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+  private final long ageBand;
+  private final Granularity granularity;
+
+  public Stratify(String ageBand, String granularity) {
+    this.ageBand = Long.valueOf(ageBand);
+    if (this.ageBand < 1) {
+      throw new IllegalArgumentException("Age band must be at least one year: " + ageBand);
+    }
+    this.granularity = Granularity.valueOf(granularity.toUpperCase());
+  }
+
+  private String timeBucket(String date) {
+    if (date == null || date.length() < 8 || Integer.valueOf(date.substring(0, 8)) < 0) {
+      return null;
+    }
+    int month = Integer.valueOf(date.substring(4, 6));
+    if (month < 1 || month > 12) {
+      return null;
+    }
+    switch (granularity) {
+    case YEAR:
+      return date.substring(0, 4);
+    case QUARTER:
+      return date.substring(0, 4) + "Q" + ((month - 1) / 3 + 1);
+    case MONTH:
+      return date.substring(0, 6);
+    default:
+      return date;
+    }
+  }
+
+  @Override
+  public Tuple exec(Tuple input) throws IOException {
+    Object gender = input.get(0);
+    Number age = (Number) input.get(1);
+    String date = (String) input.get(2);
+    Long ageBucket = age == null || age.longValue() < 0 ? null :
+        (age.longValue() / ageBand) * ageBand;
+    String timeBucket = null;
+    try {
+      timeBucket = timeBucket(date);
+    } catch (NumberFormatException e) {
+      // Leave the time bucket as null.
+    }
+    if (timeBucket == null) {
+      warn("Could not assign a time bucket to date: " + date, PigWarning.UDF_WARNING_1);
+    }
+    Tuple output = tupleFactory.newTuple(3);
+    output.set(0, gender);
+    output.set(1, ageBucket);
+    output.set(2, timeBucket);
+    return output;
+  }
+
+  @Override
+  public Schema outputSchema(Schema input) {
+    if (input.size() != 3) {
+      throw new IllegalArgumentException("Expected (gender, age, date); input has != 3 fields");
+    }
+    try {
+      List<FieldSchema> fields = Lists.newArrayList(
+          new FieldSchema("gender", input.getField(0).type),
+          new FieldSchema("age_bucket", DataType.LONG),
+          new FieldSchema("time_bucket", DataType.CHARARRAY));
+      return new Schema(new FieldSchema("strata", new Schema(fields), DataType.TUPLE));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -15,8 +15,10 @@
  */
 package com.cloudera.science.quantile;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import com.google.common.collect.Lists;
 
@@ -28,16 +30,30 @@ import com.google.common.collect.Lists;
  * <p>This implementation follows the implementation in the szl compiler:
  * http://code.google.com/p/szl/source/browse/trunk/src/emitters/szlquantile.cc
  * 
+ * <p>Queries are answered from a compacted summary that merges the level
+ * buffers into a single sorted array of values with their cumulative weights.
+ * The summary is built on the first query after the data changes, so repeated
+ * queries only require a binary search.
+ * 
+ * <p>Weighted points are added by decomposing the weight into powers of two.
+ * A point with weight 2^j for j >= 1 has the same weight as an element of the
+ * buffer at level j + 1, so it is added to a partial buffer for that level,
+ * and the partial buffer is sorted and carried into the level once it is full.
  */
 public class MunroPatersonQuantileEstimator extends QuantileEstimator {
 
   private static final long MAX_TOT_ELEMS = 1024L * 1024L * 1024L * 1024L;
 
   private final List<List<Double>> buffer = Lists.newArrayList();
+  private final List<List<Double>> partial = Lists.newArrayList();
   private final int maxElementsPerBuffer;
-  private int totalElements;
+  private long totalElements;
   private double min;
   private double max;
+
+  // The compacted summary, or null if it needs to be rebuilt.
+  private double[] values;
+  private long[] cumulativeWeights;
   
   public MunroPatersonQuantileEstimator(int numQuantiles) {
     super(numQuantiles);
@@ -97,74 +113,221 @@ public class MunroPatersonQuantileEstimator extends QuantileEstimator {
     }
   }
   
-  @Override
-  public void add(double elem) {
+  private void updateRange(double elem) {
+    values = null;
+    cumulativeWeights = null;
     if (totalElements == 0 || elem < min) {
       min = elem;
     }
     if (totalElements == 0 || max < elem) {
       max = elem;
     }
+  }
+  
+  @Override
+  public void add(double elem) {
+    updateRange(elem);
     
-    if (totalElements > 0 && totalElements % (2 * maxElementsPerBuffer) == 0) {
+    ensureBuffer(0);
+    ensureBuffer(1);
+    if (buffer.get(1).size() == maxElementsPerBuffer) {
       Collections.sort(buffer.get(0));
       Collections.sort(buffer.get(1));
       recursiveCollapse(buffer.get(0), 1);
     }
     
-    ensureBuffer(0);
-    ensureBuffer(1);
     int index = buffer.get(0).size() < maxElementsPerBuffer ? 0 : 1;
     buffer.get(index).add(elem);
     totalElements++;
   }
 
+  @Override
+  public void add(double elem, long weight) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("Negative weight: " + weight);
+    }
+    if ((weight & 1L) != 0) {
+      add(elem);
+    }
+    if (weight <= 1) {
+      return;
+    }
+    updateRange(elem);
+    for (int j = 1; j < 63; j++) {
+      if ((weight & (0x1L << j)) != 0) {
+        addPartial(elem, j + 1);
+      }
+    }
+    totalElements += weight & ~1L;
+  }
+
+  private void addPartial(double elem, int level) {
+    while (partial.size() < level + 1) {
+      partial.add(null);
+    }
+    if (partial.get(level) == null) {
+      partial.set(level, Lists.<Double>newArrayList());
+    }
+    List<Double> buf = partial.get(level);
+    buf.add(elem);
+    if (buf.size() == maxElementsPerBuffer) {
+      Collections.sort(buf);
+      ensureBuffer(level);
+      if (buffer.get(level).isEmpty()) {
+        buffer.set(level, buf);
+      } else {
+        recursiveCollapse(buf, level);
+      }
+      partial.set(level, null);
+    }
+  }
+
   @Override
   public void clear() {
     buffer.clear();
+    partial.clear();
     totalElements = 0;
+    values = null;
+    cumulativeWeights = null;
+  }
+
+  private static long weight(int level) {
+    return level <= 1 ? 1L : (0x1L << (level - 1));
+  }
+
+  private static class Cursor implements Comparable<Cursor> {
+    private final List<Double> values;
+    private final long weight;
+    private int index;
+
+    public Cursor(List<Double> values, long weight) {
+      this.values = values;
+      this.weight = weight;
+    }
+
+    public double current() {
+      return values.get(index);
+    }
+
+    public int compareTo(Cursor other) {
+      return Double.compare(current(), other.current());
+    }
+  }
+
+  /**
+   * Merges the level buffers into a sorted array of values and their
+   * cumulative weights, using a heap to perform a k-way merge of the levels.
+   */
+  private void compact() {
+    if (values != null) {
+      return;
+    }
+    PriorityQueue<Cursor> heap = new PriorityQueue<Cursor>();
+    int size = 0;
+    for (int level = 0; level < buffer.size(); level++) {
+      List<Double> buf = buffer.get(level);
+      if (buf != null && !buf.isEmpty()) {
+        if (level <= 1) {
+          Collections.sort(buf);
+        }
+        heap.add(new Cursor(buf, weight(level)));
+        size += buf.size();
+      }
+    }
+    for (int level = 0; level < partial.size(); level++) {
+      List<Double> buf = partial.get(level);
+      if (buf != null && !buf.isEmpty()) {
+        Collections.sort(buf);
+        heap.add(new Cursor(buf, weight(level)));
+        size += buf.size();
+      }
+    }
+
+    values = new double[size];
+    cumulativeWeights = new long[size];
+    long S = 0;
+    for (int i = 0; i < size; i++) {
+      Cursor c = heap.poll();
+      values[i] = c.current();
+      S += c.weight;
+      cumulativeWeights[i] = S;
+      c.index++;
+      if (c.index < c.values.size()) {
+        heap.add(c);
+      }
+    }
+  }
+
+  /**
+   * Returns the smallest value in the summary whose cumulative weight is at
+   * least the given target.
+   */
+  private double select(long targetS) {
+    // The weights are positive, so the cumulative weights are distinct.
+    int index = Arrays.binarySearch(cumulativeWeights, targetS);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index < values.length ? values[index] : max;
+  }
+
+  @Override
+  public double quantile(double phi) {
+    if (totalElements == 0) {
+      return Double.NaN;
+    }
+    if (phi <= 0.0) {
+      return min;
+    }
+    if (phi >= 1.0) {
+      return max;
+    }
+    compact();
+    return select(Math.max(1L, (long) Math.ceil(phi * totalElements)));
+  }
+
+  @Override
+  public long rank(double x) {
+    if (totalElements == 0 || x < min) {
+      return 0L;
+    }
+    if (x >= max) {
+      return totalElements;
+    }
+    compact();
+    // Find the index of the first value that is greater than x.
+    int lo = 0, hi = values.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (values[mid] <= x) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo == 0 ? 0L : cumulativeWeights[lo - 1];
+  }
+
+  @Override
+  public double cdf(double x) {
+    if (totalElements == 0) {
+      return Double.NaN;
+    }
+    return rank(x) / (double) totalElements;
   }
 
   @Override
   public List<Double> getQuantiles() {
     List<Double> quantiles = Lists.newArrayList();
-    quantiles.add(min);
-    
-    if (buffer.get(0) != null) {
-      Collections.sort(buffer.get(0));
+    if (totalElements == 0) {
+      return quantiles;
     }
-    if (buffer.get(1) != null) {
-      Collections.sort(buffer.get(1));
-    }
-    
-    int[] index = new int[buffer.size()];
-    long S = 0;
+    compact();
+    quantiles.add(min);
     for (int i = 1; i <= numQuantiles - 2; i++) {
       long targetS = (long) Math.ceil(i * (totalElements / (numQuantiles - 1.0)));
-      
-      while (true) {
-        double smallest = max;
-        int minBufferId = -1;
-        for (int j = 0; j < buffer.size(); j++) {
-          if (buffer.get(j) != null && index[j] < buffer.get(j).size()) {
-            if (!(smallest < buffer.get(j).get(index[j]))) {
-              smallest = buffer.get(j).get(index[j]);
-              minBufferId = j;
-            }
-          }
-        }
-        
-        long incrementS = minBufferId <= 1 ? 1L : (0x1L << (minBufferId - 1));
-        if (S + incrementS >= targetS) {
-          quantiles.add(smallest);
-          break;
-        } else {
-          index[minBufferId]++;
-          S += incrementS;
-        }
-      }
+      quantiles.add(select(targetS));
     }
-    
     quantiles.add(max);
     return quantiles;
   }
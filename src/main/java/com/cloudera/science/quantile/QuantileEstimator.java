@@ -42,6 +42,20 @@ public abstract class QuantileEstimator {
    * @param point The point to add
    */
   public abstract void add(double point);
+
+  /**
+   * Adds the given point to the set of points used to estimate the quantiles
+   * as if it had been added {@code weight} times. Subclasses should override
+   * this method with a more efficient implementation when they can.
+   * 
+   * @param point The point to add
+   * @param weight The number of times to add the point
+   */
+  public void add(double point, long weight) {
+    for (long i = 0; i < weight; i++) {
+      add(point);
+    }
+  }
   
   /**
    * Resets the state of this estimator.
@@ -52,4 +66,28 @@ public abstract class QuantileEstimator {
    * Returns the estimated quantile based on the data that has been added.
    */
   public abstract List<Double> getQuantiles();
+
+  /**
+   * Returns the estimated value at the given quantile, which should be between
+   * 0 and 1, or {@code Double.NaN} if no points have been added.
+   * 
+   * @param phi The quantile to estimate
+   */
+  public abstract double quantile(double phi);
+
+  /**
+   * Returns the estimated number of points that are less than or equal to the
+   * given value.
+   * 
+   * @param x The value to rank
+   */
+  public abstract long rank(double x);
+
+  /**
+   * Returns the estimated fraction of points that are less than or equal to
+   * the given value, or {@code Double.NaN} if no points have been added.
+   * 
+   * @param x The value to evaluate the empirical distribution function at
+   */
+  public abstract double cdf(double x);
 }
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.scoring;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cloudera.science.mgps.Parameters;
+import com.cloudera.science.pig.EBCIGrid;
+import com.cloudera.science.pig.EBGMStdErr;
+import com.google.common.base.Charsets;
+
+/**
+ * Scores the drug-drug-reaction triples from step 2 on a single machine,
+ * without running Pig. The input is the merged output of step 2, e.g., from
+ * {@code hadoop fs -getmerge aers/drugs2_reacs_actual_expected}, which is
+ * memory-mapped in chunks that end on line boundaries. The chunks are scored
+ * in parallel, and at most a few chunks per thread are held in memory at once.
+ *
+ * <p>Triples with fewer than {@code filterBelow} actual observations or an
+ * EB05 score below the cutoff are dropped, as in step 4, and the rest are
+ * written in their input order with the same "$"-separated fields as the
+ * output of step 4: d1, d2, reac, actual, expected, rr, ebgm, eb05, and
+ * ebgm_se. As in step 4, the standard errors are computed for the rate at
+ * which step 1 sampled the reports, and are zero if it used all of them.
+ */
+public class BatchScorer {
+
+  /** The default size of the chunks of the input file that are scored by one task. */
+  public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private final Scorer scorer;
+  private final int filterBelow;
+  private final double eb05Cutoff;
+  private final EBGMStdErr stdErr;
+  private final int threads;
+  private final int chunkSize;
+  private final AtomicLong malformed = new AtomicLong();
+
+  public BatchScorer(Scorer scorer, int filterBelow, double eb05Cutoff, int threads) {
+    this(scorer, filterBelow, eb05Cutoff, 1.0, threads, DEFAULT_CHUNK_SIZE);
+  }
+
+  public BatchScorer(Scorer scorer, int filterBelow, double eb05Cutoff, double sampleRate,
+      int threads, int chunkSize) {
+    Parameters params = scorer.getParameters();
+    this.scorer = scorer;
+    this.filterBelow = filterBelow;
+    this.eb05Cutoff = eb05Cutoff;
+    this.stdErr = new EBGMStdErr(sampleRate, params.getAlpha1(), params.getBeta1(),
+        params.getAlpha2(), params.getBeta2(), params.getP());
+    this.threads = threads;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * The number of input lines that could not be parsed, which are skipped.
+   */
+  public long getMalformedCount() {
+    return malformed.get();
+  }
+
+  private void score(String line, StringBuilder out) {
+    String[] fields = line.split("\\$", -1);
+    if (fields.length < 5) {
+      malformed.incrementAndGet();
+      return;
+    }
+    long actual;
+    double expected;
+    try {
+      actual = Long.parseLong(fields[3].trim());
+      expected = Double.parseDouble(fields[4].trim());
+    } catch (NumberFormatException e) {
+      malformed.incrementAndGet();
+      return;
+    }
+    if (actual < filterBelow) {
+      return;
+    }
+    double eb05 = scorer.eb05((int) actual, expected);
+    if (!(eb05 >= eb05Cutoff)) {
+      return;
+    }
+    out.append(fields[0]).append('$').append(fields[1]).append('$').append(fields[2])
+        .append('$').append(actual).append('$').append(expected)
+        .append('$').append(actual / expected)
+        .append('$').append(scorer.ebgm((int) actual, expected))
+        .append('$').append(eb05)
+        .append('$').append(stdErr.eval((int) actual, expected)).append('\n');
+  }
+
+  private Callable<byte[]> task(final ByteBuffer chunk) {
+    return new Callable<byte[]>() {
+      public byte[] call() {
+        CharBuffer chars = Charsets.UTF_8.decode(chunk);
+        StringBuilder out = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i <= chars.length(); i++) {
+          if (i == chars.length() || chars.charAt(i) == '\n') {
+            if (i > start) {
+              score(chars.subSequence(start, i).toString(), out);
+            }
+            start = i + 1;
+          }
+        }
+        return out.toString().getBytes(Charsets.UTF_8);
+      }
+    };
+  }
+
+  /**
+   * Returns the position just past the first newline at or after the given
+   * position, or the size of the file if there is none.
+   */
+  private static long nextLineStart(FileChannel channel, long pos) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(4096);
+    long size = channel.size();
+    while (pos < size) {
+      buf.clear();
+      int read = channel.read(buf, pos);
+      for (int i = 0; i < read; i++) {
+        if (buf.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += read;
+    }
+    return size;
+  }
+
+  /**
+   * Scores the triples in the given file and writes the ones that pass the
+   * filters to the output stream in their input order.
+   */
+  public void score(File input, OutputStream out) throws IOException {
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    RandomAccessFile raf = new RandomAccessFile(input, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+      long start = 0;
+      while (start < size) {
+        long end = Math.min(size, start + chunkSize);
+        if (end < size) {
+          end = nextLineStart(channel, end - 1);
+        }
+        ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        pending.add(workers.submit(task(chunk)));
+        while (pending.size() >= 2 * threads) {
+          out.write(pending.removeFirst().get());
+        }
+        start = end;
+      }
+      while (!pending.isEmpty()) {
+        out.write(pending.removeFirst().get());
+      }
+      out.flush();
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      workers.shutdownNow();
+      raf.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3 || args.length > 8) {
+      System.err.println("Usage: BatchScorer <input_file> <output_file> <params_file> " +
+          "[filter_below] [eb05_cutoff] [sample_rate] [threads] [eb05_grid_file]");
+      System.exit(1);
+    }
+    Parameters params = Parameters.read(new File(args[2]));
+    int filterBelow = args.length > 3 ? Integer.valueOf(args[3]) : 3;
+    double eb05Cutoff = args.length > 4 ? Double.valueOf(args[4]) : 2.0;
+    double sampleRate = args.length > 5 ? Double.valueOf(args[5]) : 1.0;
+    int threads = args.length > 6 ? Integer.valueOf(args[6]) :
+        Runtime.getRuntime().availableProcessors();
+    EBCIGrid grid = null;
+    if (args.length > 7) {
+      InputStream in = new FileInputStream(args[7]);
+      try {
+        grid = EBCIGrid.read(in);
+      } finally {
+        in.close();
+      }
+    }
+
+    BatchScorer batch = new BatchScorer(new Scorer(params, grid), filterBelow, eb05Cutoff,
+        sampleRate, threads, DEFAULT_CHUNK_SIZE);
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+    try {
+      batch.score(new File(args[0]), out);
+    } finally {
+      out.close();
+    }
+    if (batch.getMalformedCount() > 0) {
+      System.err.println("Skipped " + batch.getMalformedCount() + " malformed lines");
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.scoring;
+
+import com.cloudera.science.mgps.Parameters;
+import com.cloudera.science.pig.EBCI;
+import com.cloudera.science.pig.EBCIGrid;
+import com.cloudera.science.pig.EBGM;
+
+/**
+ * Computes the EBGM and EB05 scores for (actual, expected) pairs under a
+ * single, fixed set of {@link Parameters}, using the same logic as the
+ * {@link EBGM} and {@link EBCI} Pig functions. Instances are immutable and
+ * may be shared across threads.
+ */
+public class Scorer {
+
+  private final Parameters params;
+  private final EBGM ebgm;
+  private final EBCI eb05;
+
+  public Scorer(Parameters params) {
+    this(params, null);
+  }
+
+  /**
+   * Creates a scorer that looks up EB05 values in the given grid, which must
+   * have been built for the same parameters, before solving for them exactly.
+   */
+  public Scorer(Parameters params, EBCIGrid eb05Grid) {
+    this.params = params;
+    this.ebgm = new EBGM(params.getAlpha1(), params.getBeta1(), params.getAlpha2(),
+        params.getBeta2(), params.getP());
+    this.eb05 = new EBCI(0.05, params.getAlpha1(), params.getBeta1(), params.getAlpha2(),
+        params.getBeta2(), params.getP());
+    this.eb05.setGrid(eb05Grid);
+  }
+
+  public Parameters getParameters() {
+    return params;
+  }
+
+  public double ebgm(int n, double e) {
+    return ebgm.eval(n, e);
+  }
+
+  public double eb05(int n, double e) {
+    return eb05.eval(n, e);
+  }
+}
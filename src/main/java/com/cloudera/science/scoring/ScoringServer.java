@@ -0,0 +1,368 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.scoring;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.cloudera.science.mgps.Parameters;
+import com.cloudera.science.pig.EBCI;
+import com.cloudera.science.pig.EBCIGrid;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP server, bound to localhost, that answers ad hoc EBGM and EB05
+ * queries under a fitted set of {@link Parameters} without running Pig.
+ *
+ * <p>It supports three kinds of requests:
+ * <ul>
+ * <li>{@code GET /score?n=7&e=0.4} scores a single (actual, expected) pair.
+ * <li>{@code POST /score} scores a batch of pairs, one "n,e" pair per line of
+ * the request body.
+ * <li>{@code GET /params} returns the current parameters, and
+ * {@code POST /params} with a body of "alpha1,beta1,alpha2,beta2,p" replaces
+ * them without restarting the server. Requests that are already in flight
+ * finish with the parameters they started with.
+ * </ul>
+ * Each response line has the form "n$e$ebgm$eb05".
+ *
+ * <p>The EB05 values are looked up in an {@link EBCIGrid} for the current
+ * parameters, since solving for them exactly takes tens of milliseconds per
+ * pair. When the parameters are replaced, a grid over the same range is built
+ * for the new parameters before they are swapped in, so the POST to /params
+ * does not return until the new grid is ready, and the old parameters are used
+ * in the meantime.
+ *
+ * <p>The pairs from all of the requests are put on a single queue, and each
+ * worker thread takes up to {@code BATCH_SIZE} pairs at a time from it,
+ * regardless of which requests they came from. So many small concurrent
+ * requests are scored together in a few batches, and a large POST is spread
+ * across all of the workers. The queue holds at most {@code queueCapacity}
+ * pairs, and requests that do not fit in it are rejected with a 503.
+ */
+public class ScoringServer {
+
+  private static final int BATCH_SIZE = 64;
+  private static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+  /**
+   * The pairs from a single request, which are scored under the parameters
+   * that were current when the request arrived.
+   */
+  private static class Request {
+    private final Scorer scorer;
+    private final int[] n;
+    private final double[] e;
+    private final String[] results;
+    private final CountDownLatch done;
+    private volatile RuntimeException error;
+
+    public Request(Scorer scorer, int[] n, double[] e) {
+      this.scorer = scorer;
+      this.n = n;
+      this.e = e;
+      this.results = new String[n.length];
+      this.done = new CountDownLatch(n.length);
+    }
+
+    public void score(int i) {
+      try {
+        results[i] = n[i] + "$" + e[i] + "$" + scorer.ebgm(n[i], e[i]) + "$" +
+            scorer.eb05(n[i], e[i]) + "\n";
+      } catch (RuntimeException ex) {
+        error = ex;
+      } finally {
+        done.countDown();
+      }
+    }
+
+    public String await() throws InterruptedException {
+      done.await();
+      if (error != null) {
+        throw error;
+      }
+      StringBuilder sb = new StringBuilder();
+      for (String result : results) {
+        sb.append(result);
+      }
+      return sb.toString();
+    }
+  }
+
+  /** A reference to one of the pairs in a request. */
+  private static class Pair {
+    private final Request request;
+    private final int index;
+
+    public Pair(Request request, int index) {
+      this.request = request;
+      this.index = index;
+    }
+  }
+
+  private final AtomicReference<Scorer> scorer;
+  private EBCIGrid eb05Grid;
+  private final BlockingQueue<Pair> queue;
+  private final int threads;
+  private final ExecutorService workers;
+  private final ExecutorService httpThreads;
+  private final HttpServer server;
+
+  public ScoringServer(Parameters params, EBCIGrid eb05Grid, int port, int threads)
+      throws IOException {
+    this(params, eb05Grid, port, threads, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Creates a server for the given parameters, which looks up EB05 values in
+   * the given grid. The grid must have been built for the same parameters.
+   */
+  public ScoringServer(Parameters params, EBCIGrid eb05Grid, int port, int threads,
+      int queueCapacity) throws IOException {
+    this.scorer = new AtomicReference<Scorer>(new Scorer(params, eb05Grid));
+    this.eb05Grid = eb05Grid;
+    this.queue = new LinkedBlockingQueue<Pair>(queueCapacity);
+    this.threads = threads;
+    this.workers = Executors.newFixedThreadPool(threads);
+    this.httpThreads = Executors.newFixedThreadPool(threads);
+    this.server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+    server.createContext("/score", new ScoreHandler());
+    server.createContext("/params", new ParamsHandler());
+    server.setExecutor(httpThreads);
+  }
+
+  public void start() {
+    for (int i = 0; i < threads; i++) {
+      workers.submit(new Runnable() {
+        public void run() {
+          List<Pair> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+          try {
+            while (true) {
+              batch.add(queue.take());
+              queue.drainTo(batch, BATCH_SIZE - 1);
+              for (Pair pair : batch) {
+                pair.request.score(pair.index);
+              }
+              batch.clear();
+            }
+          } catch (InterruptedException e) {
+            // The server is stopping.
+          }
+        }
+      });
+    }
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+    httpThreads.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  static EBCI eb05(Parameters params) {
+    return new EBCI(0.05, params.getAlpha1(), params.getBeta1(), params.getAlpha2(),
+        params.getBeta2(), params.getP());
+  }
+
+  /**
+   * Builds an EB05 grid for the given parameters, over the same range as the
+   * current grid, and then atomically replaces the parameters and grid used to
+   * score subsequent requests.
+   */
+  public synchronized void setParameters(Parameters params) {
+    EBCIGrid grid = eb05Grid.rebuild(eb05(params));
+    scorer.set(new Scorer(params, grid));
+    eb05Grid = grid;
+  }
+
+  public Parameters getParameters() {
+    return scorer.get().getParameters();
+  }
+
+  /**
+   * Queues the given "n,e" pairs to be scored by the workers, and returns the
+   * response lines for them in order, or null if the queue does not have room
+   * for all of them.
+   */
+  private String score(Scorer s, List<String[]> pairs) throws InterruptedException {
+    int[] n = new int[pairs.size()];
+    double[] e = new double[pairs.size()];
+    for (int i = 0; i < n.length; i++) {
+      n[i] = Integer.valueOf(pairs.get(i)[0].trim());
+      e[i] = Double.valueOf(pairs.get(i)[1].trim());
+    }
+    if (queue.remainingCapacity() < n.length) {
+      return null;
+    }
+    Request request = new Request(s, n, e);
+    for (int i = 0; i < n.length; i++) {
+      if (!queue.offer(new Pair(request, i))) {
+        // Another request took the room we saw; the queued pairs are wasted.
+        return null;
+      }
+    }
+    return request.await();
+  }
+
+  private static List<String[]> parsePairs(List<String> lines) {
+    List<String[]> pairs = Lists.newArrayList();
+    for (String line : lines) {
+      String[] pieces = line.split("[,$\\s]+");
+      if (pieces.length != 2) {
+        throw new IllegalArgumentException("Expected 'n,e' but got: " + line);
+      }
+      pairs.add(pieces);
+    }
+    return pairs;
+  }
+
+  private static List<String> readLines(HttpExchange exchange) throws IOException {
+    List<String> lines = Lists.newArrayList();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        exchange.getRequestBody(), Charsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (!line.trim().isEmpty()) {
+        lines.add(line.trim());
+      }
+    }
+    return lines;
+  }
+
+  private static String getQueryParam(String query, String name) {
+    if (query != null) {
+      for (String kv : query.split("&")) {
+        int eq = kv.indexOf('=');
+        if (eq > 0 && kv.substring(0, eq).equals(name)) {
+          return kv.substring(eq + 1);
+        }
+      }
+    }
+    throw new IllegalArgumentException("Missing query parameter: " + name);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(Charsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    OutputStream os = exchange.getResponseBody();
+    try {
+      os.write(bytes);
+    } finally {
+      os.close();
+    }
+  }
+
+  private static void respond(HttpExchange exchange, String scores) throws IOException {
+    if (scores == null) {
+      respond(exchange, 503, "Too many pairs are waiting to be scored\n");
+    } else {
+      respond(exchange, 200, scores);
+    }
+  }
+
+  private class ScoreHandler implements HttpHandler {
+    public void handle(HttpExchange exchange) throws IOException {
+      Scorer s = scorer.get();
+      try {
+        if ("GET".equals(exchange.getRequestMethod())) {
+          String query = exchange.getRequestURI().getRawQuery();
+          List<String[]> pairs = Lists.newArrayList();
+          pairs.add(new String[] { getQueryParam(query, "n"), getQueryParam(query, "e") });
+          respond(exchange, score(s, pairs));
+        } else if ("POST".equals(exchange.getRequestMethod())) {
+          respond(exchange, score(s, parsePairs(readLines(exchange))));
+        } else {
+          respond(exchange, 405, "Unsupported method: " + exchange.getRequestMethod() + "\n");
+        }
+      } catch (IllegalArgumentException e) {
+        respond(exchange, 400, e.getMessage() + "\n");
+      } catch (RuntimeException e) {
+        respond(exchange, 500, e + "\n");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        respond(exchange, 503, "Interrupted\n");
+      }
+    }
+  }
+
+  private class ParamsHandler implements HttpHandler {
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        if ("POST".equals(exchange.getRequestMethod())) {
+          List<String> lines = readLines(exchange);
+          if (lines.size() != 1) {
+            throw new IllegalArgumentException("Expected a single line of parameters");
+          }
+          setParameters(Parameters.parse(lines.get(0)));
+        }
+        respond(exchange, 200, getParameters() + "\n");
+      } catch (IllegalArgumentException e) {
+        respond(exchange, 400, e.getMessage() + "\n");
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 4) {
+      System.err.println("Usage: ScoringServer <params_file> [port] [threads] [eb05_grid_file]");
+      System.exit(1);
+    }
+    Parameters params = Parameters.read(new File(args[0]));
+    int port = args.length > 1 ? Integer.valueOf(args[1]) : 8765;
+    int threads = args.length > 2 ? Integer.valueOf(args[2]) :
+        Runtime.getRuntime().availableProcessors();
+    EBCIGrid grid;
+    if (args.length > 3) {
+      InputStream in = new FileInputStream(args[3]);
+      try {
+        grid = EBCIGrid.read(in);
+      } finally {
+        in.close();
+      }
+    } else {
+      System.err.println("Building the EB05 grid for " + params);
+      grid = EBCIGrid.build(eb05(params));
+    }
+    ScoringServer server = new ScoringServer(params, grid, port, threads);
+    server.start();
+    System.err.println("Scoring on http://127.0.0.1:" + server.getPort() + "/ with " + params);
+  }
+}
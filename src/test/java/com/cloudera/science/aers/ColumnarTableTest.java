@@ -0,0 +1,72 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+public class ColumnarTableTest extends TestCase {
+
+  private ColumnarTable ingest(String text) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AersIngest.ingest(new StringReader(text), out);
+    byte[] bytes = out.toByteArray();
+    return ColumnarTable.read(new ByteArrayInputStream(bytes), bytes.length);
+  }
+
+  public void testIngest() throws Exception {
+    ColumnarTable drugs = ingest("ISR$DRUG_SEQ$ROLE_COD$DRUGNAME$\n" +
+        "300$1$PS$ASPIRIN$\n" +
+        "100$1$PS$ADVIL$\n" +
+        "bad$1$PS$NONE$\n" +
+        "300$2$SS$CAFF\u00C9INE$\n");
+    assertEquals(3, drugs.getNumRows());
+    assertEquals(5, drugs.getNumColumns());
+    assertEquals(2, drugs.getNumIsrs());
+    assertEquals(100L, drugs.getIsr(0));
+    assertEquals("ADVIL", drugs.get(0, 3));
+    assertEquals(1, drugs.findIsr(300L));
+    assertTrue(drugs.findIsr(200L) < 0);
+    assertEquals(1, drugs.getRowStart(1));
+    assertEquals(3, drugs.getRowEnd(1));
+    assertEquals("ASPIRIN", drugs.get(1, 3));
+    assertEquals("CAFF\u00C9INE", drugs.get(2, 3));
+    assertNull(drugs.get(2, 4));
+  }
+
+  public void testMergeJoin() throws Exception {
+    ColumnarTable demos = ingest("1$10\n2$20\n3$30\n5$50\n");
+    ColumnarTable drugs = ingest("1$A\n3$B\n3$C\n4$D\n5$E\n");
+    ColumnarTable reacs = ingest("2$X\n3$Y\n5$Z\n5$W\n");
+    IsrMergeJoin join = new IsrMergeJoin(demos, drugs, reacs);
+    List<Long> isrs = Lists.newArrayList();
+    while (join.next()) {
+      isrs.add(join.getIsr());
+      if (join.getIsr() == 3L) {
+        assertEquals("30", demos.get(join.getDemoRow(), 1));
+        assertEquals(2, join.getDrugRowEnd() - join.getDrugRowStart());
+        assertEquals("Y", reacs.get(join.getReacRowStart(), 1));
+      }
+    }
+    assertEquals(Lists.newArrayList(3L, 5L), isrs);
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.aers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+public class SyntheticAersTest extends TestCase {
+
+  private List<String> lines(File file) throws Exception {
+    return Files.readLines(file, Charsets.US_ASCII);
+  }
+
+  private void checkFieldCounts(List<String> lines, int numFields) {
+    for (String line : lines) {
+      assertEquals(line, numFields, line.split("\\$", -1).length);
+    }
+  }
+
+  public void testLayout() throws Exception {
+    File dir = Files.createTempDir();
+    try {
+      new SyntheticAers(17L, 100, 50).writeQuarter(dir, 5, 500);
+      List<String> demos = lines(new File(dir, "DEMO09Q2.TXT"));
+      List<String> drugs = lines(new File(dir, "DRUG09Q2.TXT"));
+      List<String> reacs = lines(new File(dir, "REAC09Q2.TXT"));
+      assertEquals(501, demos.size());
+      assertTrue(demos.get(0).startsWith("ISR$CASE$"));
+      checkFieldCounts(demos, 23);
+      checkFieldCounts(drugs, 12);
+      checkFieldCounts(reacs, 2);
+
+      // Some cases should have follow-up reports, and all of the FDA dates
+      // should fall in the quarter.
+      Set<String> cases = Sets.newHashSet();
+      for (String line : demos.subList(1, demos.size())) {
+        String[] fields = line.split("\\$", -1);
+        cases.add(fields[1]);
+        assertTrue(fields[7], fields[7].compareTo("20090401") >= 0);
+        assertTrue(fields[7], fields[7].compareTo("20090631") <= 0);
+      }
+      assertTrue(cases.size() < 500);
+      assertTrue(drugs.size() > 501);
+
+      // The files should be readable by the columnar ingest, which skips the header.
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      InputStreamReader reader = new InputStreamReader(
+          new FileInputStream(new File(dir, "REAC09Q2.TXT")), Charsets.US_ASCII);
+      try {
+        AersIngest.ingest(reader, out);
+      } finally {
+        reader.close();
+      }
+      byte[] bytes = out.toByteArray();
+      ColumnarTable table = ColumnarTable.read(new ByteArrayInputStream(bytes), bytes.length);
+      assertEquals(reacs.size() - 1, table.getNumRows());
+      assertEquals(500, table.getNumIsrs());
+    } finally {
+      for (File file : dir.listFiles()) {
+        file.delete();
+      }
+      dir.delete();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.gephi;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class GexfExporterTest extends TestCase {
+
+  public void testAggregatesAdjacentPairs() throws Exception {
+    String input =
+        "ASPIRIN$WARFARIN$BLEEDING$10$1.0$10.0$8.0$5.5\n" +
+        "ASPIRIN$WARFARIN$HAEMATOMA$4$0.5$8.0$6.0$3.25\n" +
+        "HEPARIN$WARFARIN$BLEEDING$6$1.0$6.0$5.0$2.5\n";
+    StringWriter output = new StringWriter();
+    new GexfExporter().export(new StringReader(input), output);
+    String gexf = output.toString();
+
+    assertTrue(gexf.contains("<node id=\"0\" label=\"ASPIRIN\"/>"));
+    assertTrue(gexf.contains("<node id=\"1\" label=\"WARFARIN\"/>"));
+    assertTrue(gexf.contains("<node id=\"2\" label=\"HEPARIN\"/>"));
+    assertTrue(gexf.contains(
+        "<edge id=\"0\" source=\"0\" target=\"1\" weight=\"5.50\">"));
+    assertTrue(gexf.contains("value=\"BLEEDING$HAEMATOMA\""));
+    assertTrue(gexf.contains(
+        "<edge id=\"1\" source=\"2\" target=\"1\" weight=\"2.50\">"));
+    assertTrue(gexf.indexOf("</nodes>") < gexf.indexOf("<edges>"));
+  }
+
+  public void testUnsortedInput() throws Exception {
+    String input =
+        "WARFARIN$ZOLOFT$BLEEDING$10$1.0$10.0$8.0$5.5\n" +
+        "ASPIRIN$WARFARIN$BLEEDING$6$1.0$6.0$5.0$2.5\n";
+    try {
+      new GexfExporter().export(new StringReader(input), new StringWriter());
+      fail("Expected unsorted input to be rejected");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
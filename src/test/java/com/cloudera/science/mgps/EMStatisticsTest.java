@@ -0,0 +1,89 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.mgps;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class EMStatisticsTest extends TestCase {
+
+  private static final int[] N = { 3, 3, 4, 5, 3, 8, 12, 3, 4, 20, 6, 3 };
+  private static final double[] E = { 0.5, 1.2, 0.8, 2.0, 3.1, 0.4, 1.0, 0.9, 0.2, 0.7, 5.0, 1.5 };
+
+  private EMStatistics compute(Parameters params, int from, int to) {
+    EMStatistics stats = new EMStatistics(params, 3);
+    for (int i = from; i < to; i++) {
+      stats.add(N[i], E[i], 2.0);
+    }
+    return stats;
+  }
+
+  public void testMerge() {
+    Parameters params = new Parameters(0.5, 0.2, 3.0, 3.0, 0.3);
+    EMStatistics full = compute(params, 0, N.length);
+    EMStatistics merged = compute(params, 0, 5);
+    merged.merge(compute(params, 5, N.length).toArray());
+    double[] expected = full.toArray();
+    double[] actual = merged.toArray();
+    for (int i = 0; i < EMStatistics.SIZE; i++) {
+      assertEquals(expected[i], actual[i], 1e-9 * Math.max(1.0, Math.abs(expected[i])));
+    }
+  }
+
+  private static EMStatistics compute(Parameters params, int[] n, double[] e) {
+    EMStatistics stats = new EMStatistics(params, 1);
+    for (int i = 0; i < n.length; i++) {
+      stats.add(n[i], e[i], 1.0);
+    }
+    return stats;
+  }
+
+  public void testLogLikelihoodIncreases() {
+    // Simulate counts from a mixture of two rates.
+    Random rand = new Random(17);
+    int[] n = new int[60];
+    double[] e = new double[n.length];
+    for (int i = 0; i < n.length;) {
+      e[i] = 0.2 + 2.0 * rand.nextDouble();
+      double lambda = (rand.nextDouble() < 0.7 ? 0.8 : 4.0) * (0.5 + rand.nextDouble());
+      double limit = Math.exp(-lambda * e[i]), prod = rand.nextDouble();
+      int k = 0;
+      while (prod > limit) {
+        k++;
+        prod *= rand.nextDouble();
+      }
+      if (k >= 1) {
+        n[i++] = k;
+      }
+    }
+
+    Parameters params = new Parameters(1.0, 1.0, 2.0, 2.0, 0.5);
+    double start = compute(params, n, e).getLogLikelihood();
+    for (int i = 0; i < 10; i++) {
+      EMStatistics stats = compute(params, n, e);
+      double stepSize = 1.0;
+      Parameters next = stats.maximize(stepSize);
+      while (compute(next, n, e).getLogLikelihood() < stats.getLogLikelihood()) {
+        stepSize /= 2.0;
+        assertTrue(stepSize > 1e-3);
+        next = stats.maximize(stepSize);
+      }
+      params = next;
+    }
+    assertTrue(compute(params, n, e).getLogLikelihood() > start + 10.0);
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.mgps;
+
+import java.io.File;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+public class ParametersTest extends TestCase {
+
+  public void testParse() throws Exception {
+    Parameters params = Parameters.parse(" 6.810308e-07, 2.364503e-01 2.499492e-04,3.896551e+00 1 ");
+    assertEquals(6.810308e-07, params.getAlpha1(), 0.0);
+    assertEquals(2.364503e-01, params.getBeta1(), 0.0);
+    assertEquals(2.499492e-04, params.getAlpha2(), 0.0);
+    assertEquals(3.896551e+00, params.getBeta2(), 0.0);
+    assertEquals(1.0, params.getP(), 0.0);
+    assertEquals(params.toString(), Parameters.parse(params.toString()).toString());
+  }
+
+  public void testParseErrors() throws Exception {
+    try {
+      Parameters.parse("0.1,0.2,0.3,0.4");
+      fail("Expected an exception for four values");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      Parameters.parse("0.1,0.2,0.3,0.4,x");
+      fail("Expected an exception for a non-numeric value");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testRead() throws Exception {
+    File file = File.createTempFile("params", ".csv");
+    file.deleteOnExit();
+    Files.write("# fitted parameters\n\n0.2,0.1,2.0,4.0,0.3333\n", file, Charsets.UTF_8);
+    Parameters params = Parameters.read(file);
+    assertEquals(0.2, params.getAlpha1(), 0.0);
+    assertEquals(0.3333, params.getP(), 0.0);
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.util.Arrays;
+
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import junit.framework.TestCase;
+
+public class BuildBloomTest extends TestCase {
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+  private final BagFactory bagFactory = BagFactory.getInstance();
+
+  private Tuple isrs(long from, long to) {
+    DataBag bag = bagFactory.newDefaultBag();
+    for (long isr = from; isr < to; isr += 2) {
+      bag.add(tupleFactory.newTuple(isr));
+    }
+    return tupleFactory.newTuple(bag);
+  }
+
+  public void testInitial() throws Exception {
+    // The initial function runs once per record, so it should pass the key
+    // through rather than serialize a full-sized filter for every ISR.
+    Tuple partial = new BuildBloom.Initial("2000000", "0.01").exec(isrs(4, 5));
+    assertEquals(1, partial.size());
+    assertEquals(4L, partial.get(0));
+  }
+
+  public void testAlgebraic() throws Exception {
+    // Combine the even ISRs in the first half into a partial filter, and pass
+    // the second half straight to the final function, as when the combiner
+    // does not run.
+    BuildBloom.Initial initial = new BuildBloom.Initial("1000", "0.01");
+    DataBag firstHalf = bagFactory.newDefaultBag();
+    for (long isr = 0; isr < 1000; isr += 2) {
+      firstHalf.add(initial.exec(isrs(isr, isr + 1)));
+    }
+    DataBag finals = bagFactory.newDefaultBag();
+    finals.add(new BuildBloom.Intermediate("1000", "0.01").exec(
+        tupleFactory.newTuple(firstHalf)));
+    for (long isr = 1000; isr < 2000; isr += 2) {
+      finals.add(initial.exec(isrs(isr, isr + 1)));
+    }
+    DataByteArray bytes = new BuildBloom.Final("1000", "0.01").exec(
+        tupleFactory.newTuple(finals));
+
+    InBloom in = new InBloom();
+    int falsePositives = 0;
+    for (long isr = 0; isr < 2000; isr++) {
+      boolean member = in.exec(tupleFactory.newTuple(Arrays.<Object>asList(isr, bytes)));
+      if (isr % 2 == 0) {
+        assertTrue(member);
+      } else if (member) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 30);
+    assertFalse(in.exec(tupleFactory.newTuple(Arrays.<Object>asList(null, bytes))));
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+
+import com.cloudera.science.aers.AersIngest;
+import com.cloudera.science.aers.ColumnarTable;
+import com.cloudera.science.aers.IsrMergeJoin;
+
+import junit.framework.TestCase;
+
+public class ColumnarAersLoaderTest extends TestCase {
+
+  private ColumnarTable ingest(String text) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AersIngest.ingest(new StringReader(text), out);
+    byte[] bytes = out.toByteArray();
+    return ColumnarTable.read(new ByteArrayInputStream(bytes), bytes.length);
+  }
+
+  private static String demo(long isr, int caseId, String fdaDate, String age,
+      String ageCode, String gender) {
+    return isr + "$" + caseId + "$I$$$" + fdaDate + "$" + fdaDate + "$" + fdaDate +
+        "$EXP$$$" + age + "$" + ageCode + "$" + gender + "$Y$$$" + fdaDate + "$MD$$$N$US\n";
+  }
+
+  /** A record reader over a single, in-memory quarter. */
+  private static RecordReader<LongWritable, IsrMergeJoin> reader(final IsrMergeJoin join) {
+    return new RecordReader<LongWritable, IsrMergeJoin>() {
+      @Override
+      public void initialize(InputSplit split, TaskAttemptContext context) {
+      }
+
+      @Override
+      public boolean nextKeyValue() {
+        return join.next();
+      }
+
+      @Override
+      public LongWritable getCurrentKey() {
+        return new LongWritable(join.getIsr());
+      }
+
+      @Override
+      public IsrMergeJoin getCurrentValue() {
+        return join;
+      }
+
+      @Override
+      public float getProgress() {
+        return 0.0f;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  public void testGetNext() throws Exception {
+    ColumnarTable demos = ingest("ISR$CASE$I_F_COD\n" +
+        demo(102, 7, "20080105", "45", "YR", "F") +
+        demo(101, 7, "20080102", "bad", "YR", "M") +
+        demo(103, 8, "20080203", "60", "YR", "M"));
+    ColumnarTable drugs = ingest("ISR$DRUG_SEQ$ROLE_COD$DRUGNAME\n" +
+        "101$1$PS$ASPIRIN$1$ORAL$$U$U$$$\n" +
+        "102$1$PS$ADVIL$1$ORAL$$U$U$$$\n" +
+        "102$2$SS$CAFFEINE$1$ORAL$$U$U$$$\n" +
+        "103$1$PS$TYLENOL$1$ORAL$$U$U$$$\n");
+    ColumnarTable reacs = ingest("ISR$PT\n101$NAUSEA\n102$HEADACHE\n");
+
+    ColumnarAersLoader loader = new ColumnarAersLoader();
+    loader.prepareToRead(reader(new IsrMergeJoin(demos, drugs, reacs)), null);
+
+    // ISR 103 has no reactions, so it is not returned.
+    Tuple first = loader.getNext();
+    assertEquals(101L, first.get(0));
+    assertEquals(7, first.get(1));
+    assertEquals("20080102", first.get(2));
+    assertNull(first.get(3));
+    assertEquals("YR", first.get(4));
+    assertEquals("M", first.get(5));
+
+    Tuple second = loader.getNext();
+    assertEquals(102L, second.get(0));
+    assertEquals(45L, second.get(3));
+    assertEquals("F", second.get(5));
+    DataBag drugBag = (DataBag) second.get(6);
+    assertEquals(2L, drugBag.size());
+    Iterator<Tuple> it = drugBag.iterator();
+    assertEquals("ADVIL", it.next().get(0));
+    assertEquals("CAFFEINE", it.next().get(0));
+    assertEquals("HEADACHE", ((DataBag) second.get(7)).iterator().next().get(0));
+    assertNull(loader.getNext());
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import junit.framework.TestCase;
+
+public class CombinatorialTest extends TestCase {
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+
+  private Tuple input(int size, long isr) {
+    DataBag bag = BagFactory.getInstance().newDefaultBag();
+    for (int i = 0; i < size; i++) {
+      bag.add(tupleFactory.newTuple("DRUG" + i));
+    }
+    return tupleFactory.newTuple(ImmutableList.of(bag, isr));
+  }
+
+  private List<Tuple> exec(Combinatorial c, Tuple input) throws Exception {
+    return Lists.newArrayList(c.exec(input).iterator());
+  }
+
+  public void testAllSubsets() throws Exception {
+    List<Tuple> output = exec(new Combinatorial("2"), input(4, 1L));
+    assertEquals(6, output.size());
+    assertEquals(2, output.get(0).size());
+  }
+
+  public void testUnderBudget() throws Exception {
+    List<Tuple> output = exec(new Combinatorial("3", "10"), input(5, 1L));
+    assertEquals(10, output.size());
+    for (Tuple t : output) {
+      assertEquals(1.0, t.get(3));
+    }
+  }
+
+  public void testSampledSubsets() throws Exception {
+    Combinatorial c = new Combinatorial("3", "100");
+    List<Tuple> output = exec(c, input(60, 1234L));
+    assertEquals(100, output.size());
+    Set<Tuple> uniq = Sets.newHashSet(output);
+    assertEquals(100, uniq.size());
+    for (Tuple t : output) {
+      assertEquals(342.2, (Double) t.get(3), 1e-9);
+      assertTrue(((String) t.get(0)).compareTo((String) t.get(1)) < 0);
+      assertTrue(((String) t.get(1)).compareTo((String) t.get(2)) < 0);
+    }
+    assertEquals(output, exec(c, input(60, 1234L)));
+    assertFalse(output.equals(exec(c, input(60, 4321L))));
+  }
+}
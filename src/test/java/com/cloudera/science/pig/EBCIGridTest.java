@@ -0,0 +1,95 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class EBCIGridTest extends TestCase {
+
+  private static final double TOL = 0.01;
+
+  private EBCI create() {
+    return new EBCI(0.05, 0.000010000, 0.08233474, 3.32444654, 3.33311009,
+        1.00000000);
+  }
+
+  public void testLookup() throws Exception {
+    EBCI ebci = create();
+    EBCIGrid grid = EBCIGrid.build(ebci, 3, 25, 0.1, 10.0, 10);
+    assertEquals(ebci.eval(20, 0.234), grid.lookup(20, 0.234), TOL);
+    assertTrue(Double.isNaN(grid.lookup(2, 1.0)));
+    assertTrue(Double.isNaN(grid.lookup(26, 1.0)));
+    assertTrue(Double.isNaN(grid.lookup(20, 0.01)));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    grid.write(out);
+    EBCIGrid copy = EBCIGrid.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(grid.lookup(20, 0.234), copy.lookup(20, 0.234));
+    assertEquals(grid.getMaxError(), copy.getMaxError());
+
+    EBCI gridded = create();
+    gridded.setGrid(copy);
+    assertEquals(4.1929, gridded.eval(20, 0.234), TOL);
+    assertEquals(ebci.eval(40, 0.234), gridded.eval(40, 0.234));
+  }
+
+  public void testSingleColumn() throws Exception {
+    try {
+      EBCIGrid.build(create(), 3, 4, 1.0, 1.0, 10);
+      fail("Expected a grid with a single expected count to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // A grid file with a single expected count cannot be interpolated either.
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(out);
+    dos.writeInt(0x45424349);
+    dos.writeInt(1);
+    dos.writeInt(0);
+    dos.writeInt(3);
+    dos.writeInt(4);
+    dos.writeDouble(0.0);
+    dos.writeInt(10);
+    dos.writeInt(1);
+    dos.writeDouble(0.0);
+    dos.writeDouble(0.0);
+    dos.writeDouble(0.0);
+    dos.close();
+    try {
+      EBCIGrid.read(new ByteArrayInputStream(out.toByteArray()));
+      fail("Expected a grid file with a single expected count to be rejected");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testMismatchedParameters() throws Exception {
+    EBCIGrid grid = EBCIGrid.build(create(), 3, 4, 0.1, 1.0, 2);
+    EBCI other = new EBCI(0.05, 0.1, 0.2, 0.3, 0.4, 0.5);
+    try {
+      other.setGrid(grid);
+      fail("Expected a grid built for different parameters to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import junit.framework.TestCase;
+
+public class EBGMStdErrTest extends TestCase {
+
+  public void testStdErr() throws Exception {
+    EBGM ebgm = new EBGM(0.2, 0.1, 2.0, 4.0, 0.3333);
+    EBGMStdErr full = new EBGMStdErr(1.0, 0.2, 0.1, 2.0, 4.0, 0.3333);
+    EBGMStdErr sampled = new EBGMStdErr(0.25, 0.2, 0.1, 2.0, 4.0, 0.3333);
+    assertEquals(0.0, full.eval(20, 2.0), 0.0);
+
+    // With n = 12 and r = 0.25, the standard deviation of n is exactly 6.
+    double expected = (ebgm.eval(18, 2.0) - ebgm.eval(6, 2.0)) / 2.0;
+    assertEquals(expected, sampled.eval(12, 2.0), 1e-12);
+    assertTrue(sampled.eval(12, 2.0) > 0.0);
+    assertTrue(sampled.eval(1, 2.0) > 0.0);
+  }
+}
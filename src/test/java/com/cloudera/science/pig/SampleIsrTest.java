@@ -0,0 +1,41 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import org.apache.pig.data.TupleFactory;
+
+import junit.framework.TestCase;
+
+public class SampleIsrTest extends TestCase {
+
+  public void testSampleRate() throws Exception {
+    SampleIsr sample = new SampleIsr("0.1");
+    SampleIsr again = new SampleIsr("0.1");
+    SampleIsr larger = new SampleIsr("0.5");
+    int kept = 0;
+    for (long isr = 5000000L; isr < 5100000L; isr++) {
+      if (sample.keep(isr)) {
+        kept++;
+        assertTrue(again.keep(isr));
+        // The samples at lower rates are nested inside the samples at higher rates.
+        assertTrue(larger.keep(isr));
+      }
+    }
+    assertEquals(10000, kept, 300);
+    assertTrue(new SampleIsr("1.0").keep(5000000L));
+    assertFalse(sample.exec(TupleFactory.getInstance().newTuple((Object) null)));
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import junit.framework.TestCase;
+
+public class SquashTest extends TestCase {
+
+  private static final int N = 5;
+  private static final int SIZE = 200;
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+  private final BagFactory bagFactory = BagFactory.getInstance();
+
+  private Squash squash(double tolerance) {
+    return new Squash(tolerance, 6.810308e-07, 2.364503e-01, 2.499492e-04, 3.896551e+00,
+        1.0);
+  }
+
+  /** Expected counts that are spread over several orders of magnitude, out of order. */
+  private double[] values() {
+    double[] values = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      values[i] = 0.01 * Math.pow(10.0, 4.0 * ((i * 37) % SIZE) / SIZE);
+    }
+    return values;
+  }
+
+  private Tuple input(double[] values) {
+    DataBag bag = bagFactory.newDefaultBag();
+    for (double v : values) {
+      bag.add(tupleFactory.newTuple(v));
+    }
+    bag.add(tupleFactory.newTuple((Object) null));
+    return tupleFactory.newTuple(Arrays.<Object>asList(N, bag));
+  }
+
+  public void testBins() throws Exception {
+    double[] values = values();
+    DataBag output = squash(0.01).exec(input(values));
+
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    List<Integer> ends = squash(0.01).squash(N, sorted);
+    assertEquals(ends.size(), output.size());
+    assertTrue(ends.size() > 1 && ends.size() < SIZE);
+
+    int bin = 1, start = 0;
+    long totalWeight = 0;
+    double totalExpected = 0.0;
+    for (Tuple t : output) {
+      assertEquals(bin, ((Number) t.get(0)).intValue());
+      int end = ends.get(bin - 1);
+      assertTrue(end > start);
+      double sum = 0.0;
+      for (int i = start; i < end; i++) {
+        sum += sorted[i];
+      }
+      assertEquals(sum, (Double) t.get(1), 1e-9);
+      assertEquals((long) (end - start), ((Long) t.get(2)).longValue());
+      totalWeight += (Long) t.get(2);
+      totalExpected += (Double) t.get(1);
+      start = end;
+      bin++;
+    }
+    assertEquals(SIZE, start);
+    assertEquals((long) SIZE, totalWeight);
+    double sum = 0.0;
+    for (double v : values) {
+      sum += v;
+    }
+    assertEquals(sum, totalExpected, 1e-9);
+  }
+
+  public void testLargeTolerance() throws Exception {
+    DataBag output = squash(1e9).exec(input(values()));
+    assertEquals(1L, output.size());
+    Tuple t = output.iterator().next();
+    assertEquals(1, ((Number) t.get(0)).intValue());
+    assertEquals((long) SIZE, ((Long) t.get(2)).longValue());
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import com.google.common.base.Charsets;
+
+import junit.framework.TestCase;
+
+public class StrataExpectedTest extends TestCase {
+
+  private static InputStream stream(String text) {
+    return new ByteArrayInputStream(text.getBytes(Charsets.UTF_8));
+  }
+
+  public void testExpected() throws Exception {
+    StrataExpected se = new StrataExpected("unused", "unused", "unused");
+    se.load(
+        stream("M$30.0$2008Q1$10\nF$30.0$2008Q1$20\nM$40.0$2008Q2$5\n"),
+        stream("M$30.0$2008Q1$A$4\nF$30.0$2008Q1$A$6\nM$30.0$2008Q1$B$5\n" +
+            "F$30.0$2008Q1$B$10\nM$40.0$2008Q2$B$2\n"),
+        stream("M$30.0$2008Q1$X$2\nF$30.0$2008Q1$X$8\nM$40.0$2008Q2$X$5\n"));
+    assertEquals(3, se.getNumStrata());
+
+    // The third stratum has no counts for drug A, so it does not contribute.
+    double expected = 4.0 * 5 * 2 / (10 * 10) + 6.0 * 10 * 8 / (20 * 20);
+    assertEquals(expected, se.expected("A", "B", "X"), 1e-12);
+    assertEquals(expected, se.expected("B", "A", "X"), 1e-12);
+    assertNull(se.expected("A", "C", "X"));
+    assertNull(se.expected("A", "B", "Y"));
+  }
+}
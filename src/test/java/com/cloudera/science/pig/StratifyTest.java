@@ -0,0 +1,83 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.pig;
+
+import java.util.Arrays;
+
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import junit.framework.TestCase;
+
+public class StratifyTest extends TestCase {
+
+  private final TupleFactory tupleFactory = TupleFactory.getInstance();
+
+  private Tuple stratify(Stratify stratify, Integer age, String date) throws Exception {
+    return stratify.exec(tupleFactory.newTuple(Arrays.<Object>asList("F", age, date)));
+  }
+
+  private String timeBucket(String granularity, String date) throws Exception {
+    return (String) stratify(new Stratify("10", granularity), 40, date).get(2);
+  }
+
+  private Long ageBucket(String ageBand, Integer age) throws Exception {
+    return (Long) stratify(new Stratify(ageBand, "year"), age, "20080715").get(1);
+  }
+
+  public void testGranularity() throws Exception {
+    assertEquals("2008", timeBucket("year", "20080715"));
+    assertEquals("2008Q1", timeBucket("quarter", "20080315"));
+    assertEquals("2008Q2", timeBucket("quarter", "20080401"));
+    assertEquals("2008Q3", timeBucket("QUARTER", "20080715"));
+    assertEquals("2008Q4", timeBucket("quarter", "20081231"));
+    assertEquals("200807", timeBucket("month", "20080715"));
+    assertEquals("20080715", timeBucket("day", "20080715"));
+    Tuple strata = stratify(new Stratify("10", "year"), 40, "20080715");
+    assertEquals("F", strata.get(0));
+  }
+
+  public void testAgeBands() throws Exception {
+    assertEquals(Long.valueOf(0L), ageBucket("10", 0));
+    assertEquals(Long.valueOf(0L), ageBucket("10", 9));
+    assertEquals(Long.valueOf(10L), ageBucket("10", 10));
+    assertEquals(Long.valueOf(15L), ageBucket("5", 19));
+    assertEquals(Long.valueOf(20L), ageBucket("5", 20));
+    assertEquals(Long.valueOf(37L), ageBucket("1", 37));
+  }
+
+  public void testRejected() throws Exception {
+    assertNull(timeBucket("year", null));
+    assertNull(timeBucket("year", "200807"));
+    assertNull(timeBucket("year", "2008-07-15"));
+    assertNull(timeBucket("month", "20081315"));
+    assertNull(timeBucket("quarter", "20080015"));
+    assertNull(ageBucket("10", null));
+    assertNull(ageBucket("10", -5));
+    try {
+      new Stratify("0", "year");
+      fail("Expected an age band of zero years to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new Stratify("10", "week");
+      fail("Expected an unknown granularity to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -33,4 +33,68 @@ public class MunroPatersonQuantileEstimatorTest extends TestCase {
     assertEquals(ImmutableList.of(0.0, 38.0, 78.0, 118.0, 158.0, 198.0),
         qe.getQuantiles());
   }
+
+  public void testEmpty() {
+    QuantileEstimator qe = create(6);
+    assertTrue(qe.getQuantiles().isEmpty());
+    assertTrue(Double.isNaN(qe.quantile(0.5)));
+    assertEquals(0L, qe.rank(1.0));
+  }
+
+  public void testQueries() {
+    QuantileEstimator qe = create(6);
+    for (int i = 0; i < 200; i += 2) {
+      qe.add(i);
+    }
+    assertEquals(0.0, qe.quantile(0.0));
+    assertEquals(98.0, qe.quantile(0.5));
+    assertEquals(198.0, qe.quantile(1.0));
+    assertEquals(0L, qe.rank(-1.0));
+    assertEquals(50L, qe.rank(98.0));
+    assertEquals(50L, qe.rank(99.0));
+    assertEquals(100L, qe.rank(500.0));
+    assertEquals(0.5, qe.cdf(98.0), 1e-9);
+  }
+
+  public void testQueriesAfterCollapse() {
+    QuantileEstimator qe = create(101);
+    int n = 100000;
+    for (int i = 0; i < n; i++) {
+      qe.add((i * 7919L) % n);
+    }
+    for (double phi = 0.1; phi < 1.0; phi += 0.1) {
+      assertEquals(phi * n, qe.quantile(phi), 0.01 * n);
+      assertEquals(phi, qe.cdf(phi * n), 0.01);
+    }
+    qe.add(-1.0);
+    assertEquals(-1.0, qe.quantile(0.0));
+    assertEquals(1L, qe.rank(-1.0));
+  }
+
+  public void testWeighted() {
+    QuantileEstimator qe = create(6);
+    for (int i = 0; i < 200; i += 2) {
+      qe.add(i, 3L);
+    }
+    assertEquals(ImmutableList.of(0.0, 38.0, 78.0, 118.0, 158.0, 198.0),
+        qe.getQuantiles());
+    assertEquals(300L, qe.rank(500.0));
+  }
+
+  public void testWeightedAfterCollapse() {
+    QuantileEstimator qe = create(101);
+    // Each value i in [0, n) has weight i + 1.
+    int n = 20000;
+    long total = 0;
+    for (int i = 0; i < n; i++) {
+      long v = (i * 7919L) % n;
+      qe.add(v, v + 1);
+      total += v + 1;
+    }
+    assertEquals(total, qe.rank(n));
+    for (double phi = 0.1; phi < 1.0; phi += 0.1) {
+      double expected = Math.sqrt(2.0 * phi * total);
+      assertEquals(expected, qe.quantile(phi), 0.01 * n);
+    }
+  }
 }
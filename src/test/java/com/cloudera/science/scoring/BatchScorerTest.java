@@ -0,0 +1,66 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.scoring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import com.cloudera.science.mgps.Parameters;
+import com.cloudera.science.pig.EBGMStdErr;
+import com.google.common.base.Charsets;
+
+import junit.framework.TestCase;
+
+public class BatchScorerTest extends TestCase {
+
+  private final Scorer scorer = new Scorer(
+      new Parameters(6.810308e-07, 2.364503e-01, 2.499492e-04, 3.896551e+00, 1.0));
+
+  public void testScoreInOrder() throws Exception {
+    EBGMStdErr stdErr = new EBGMStdErr(0.25, 6.810308e-07, 2.364503e-01, 2.499492e-04,
+        3.896551e+00, 1.0);
+    StringBuilder input = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 12; i++) {
+      int n = 3 + (i % 4);
+      double e = 0.25 * (i + 1);
+      input.append("D" + i + "$E" + i + "$R" + i + "$" + n + "$" + e + "\n");
+      double eb05 = scorer.eb05(n, e);
+      if (eb05 >= 1.0) {
+        expected.append("D" + i + "$E" + i + "$R" + i + "$" + n + "$" + e + "$" + (n / e) +
+            "$" + scorer.ebgm(n, e) + "$" + eb05 + "$" + stdErr.eval(n, e) + "\n");
+      }
+    }
+    input.append("D$E$R$2$0.1\n");
+    input.append("malformed line\n");
+
+    File file = File.createTempFile("batch", ".txt");
+    file.deleteOnExit();
+    OutputStream out = new FileOutputStream(file);
+    out.write(input.toString().getBytes(Charsets.UTF_8));
+    out.close();
+
+    // Use chunks that are much smaller than the file to exercise the splitting.
+    BatchScorer batch = new BatchScorer(scorer, 3, 1.0, 0.25, 3, 50);
+    ByteArrayOutputStream scored = new ByteArrayOutputStream();
+    batch.score(file, scored);
+    assertTrue(expected.length() > 0);
+    assertEquals(expected.toString(), new String(scored.toByteArray(), Charsets.UTF_8));
+    assertEquals(1L, batch.getMalformedCount());
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.science.scoring;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import com.cloudera.science.mgps.Parameters;
+import com.cloudera.science.pig.EBCIGrid;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import junit.framework.TestCase;
+
+public class ScoringServerTest extends TestCase {
+
+  private final Parameters params = new Parameters(
+      6.810308e-07, 2.364503e-01, 2.499492e-04, 3.896551e+00, 1.0);
+  private EBCIGrid grid;
+  private ScoringServer server;
+
+  @Override
+  protected void setUp() throws Exception {
+    // A small grid keeps the test fast; pairs that are off the grid are solved exactly.
+    grid = EBCIGrid.build(ScoringServer.eb05(params), 1, 10, 0.1, 1.0, 1);
+    server = new ScoringServer(params, grid, 0, 2, 256);
+    server.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop();
+  }
+
+  private String request(String method, String path, String body) throws IOException {
+    URL url = new URL("http://127.0.0.1:" + server.getPort() + path);
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestMethod(method);
+    if (body != null) {
+      conn.setDoOutput(true);
+      OutputStream out = conn.getOutputStream();
+      out.write(body.getBytes(Charsets.UTF_8));
+      out.close();
+    }
+    InputStream in = conn.getResponseCode() < 400 ? conn.getInputStream() :
+        conn.getErrorStream();
+    try {
+      return conn.getResponseCode() + " " +
+          new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+    } finally {
+      in.close();
+    }
+  }
+
+  private String line(Scorer scorer, int n, double e) {
+    return n + "$" + e + "$" + scorer.ebgm(n, e) + "$" + scorer.eb05(n, e) + "\n";
+  }
+
+  public void testScore() throws Exception {
+    Scorer scorer = new Scorer(params, grid);
+    assertEquals("200 " + line(scorer, 7, 0.4), request("GET", "/score?n=7&e=0.4", null));
+
+    StringBuilder body = new StringBuilder();
+    StringBuilder expected = new StringBuilder("200 ");
+    for (int i = 0; i < 200; i++) {
+      int n = 1 + i % 20;
+      double e = 0.1 * (1 + i % 7);
+      body.append(n).append(',').append(e).append('\n');
+      expected.append(line(scorer, n, e));
+    }
+    assertEquals(expected.toString(), request("POST", "/score", body.toString()));
+    assertTrue(request("POST", "/score", "7,0.4\nbad\n").startsWith("400 "));
+  }
+
+  public void testParams() throws Exception {
+    assertEquals("200 " + params + "\n", request("GET", "/params", null));
+    Parameters updated = new Parameters(0.2, 0.1, 2.0, 4.0, 0.3333);
+    assertEquals("200 " + updated + "\n", request("POST", "/params", updated.toString()));
+    Scorer scorer = new Scorer(updated, grid.rebuild(ScoringServer.eb05(updated)));
+    assertEquals("200 " + line(scorer, 3, 0.5), request("GET", "/score?n=3&e=0.5", null));
+  }
+
+  public void testQueueFull() throws Exception {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      body.append("3,0.5\n");
+    }
+    assertTrue(request("POST", "/score", body.toString()).startsWith("503 "));
+    assertEquals("200 " + line(new Scorer(params, grid), 3, 0.5),
+        request("GET", "/score?n=3&e=0.5", null));
+  }
+}